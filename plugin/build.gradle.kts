@@ -137,6 +137,7 @@ dependencies {
   implementation("net.fabricmc:mapping-io:0.5.1")
   // Use JUnit Jupiter for testing.
   testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
+  testImplementation("org.ow2.asm:asm-util:9.7")
   testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
   constraints {
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.zip.ZipFile;
 
+import org.apache.commons.io.FileUtils;
 import org.gradle.testkit.runner.BuildResult;
 import org.gradle.testkit.runner.BuildTask;
 import org.gradle.testkit.runner.GradleRunner;
@@ -128,6 +129,36 @@ class UserDevPluginFunctionalTest {
                 new BuildTask[] {});
     }
 
+    @Test
+    void decompilationIsBuildCacheable() throws IOException {
+        final File buildCacheDir = new File(projectDir, "build-cache");
+        writeString(getSettingsFile(), SIMPLE_SETTINGS + """
+                buildCache {
+                    local {
+                        directory = new File(rootDir, 'build-cache')
+                    }
+                }
+                """);
+        writeString(getBuildFile(), SIMPLE_BUILDSCRIPT);
+
+        // Run the build
+        GradleRunner runner = GradleRunner.create();
+        runner.forwardOutput();
+        runner.withPluginClasspath();
+        runner.withArguments("--stacktrace", "--build-cache", "--", "cleanupDecompSrgJar");
+        runner.withProjectDir(projectDir);
+        BuildResult result = runner.build();
+        Assertions.assertEquals(TaskOutcome.SUCCESS, result.task(":decompileSrgJar").getOutcome());
+        Assertions.assertEquals(TaskOutcome.SUCCESS, result.task(":cleanupDecompSrgJar").getOutcome());
+        Assertions.assertTrue(buildCacheDir.isDirectory());
+
+        // Everything upstream is rebuilt, the decompiled jars have to come from the cache
+        FileUtils.deleteDirectory(getBuildDir());
+        BuildResult secondResult = runner.build();
+        Assertions.assertEquals(TaskOutcome.FROM_CACHE, secondResult.task(":decompileSrgJar").getOutcome());
+        Assertions.assertEquals(TaskOutcome.FROM_CACHE, secondResult.task(":cleanupDecompSrgJar").getOutcome());
+    }
+
     @Test
     void canRecompile() throws IOException {
         writeString(getSettingsFile(), SIMPLE_SETTINGS);
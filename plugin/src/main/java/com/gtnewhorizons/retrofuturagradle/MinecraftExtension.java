@@ -2,12 +2,14 @@ package com.gtnewhorizons.retrofuturagradle;
 
 import org.gradle.api.Project;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.SetProperty;
 
 import com.google.common.collect.Lists;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
 
 /**
  * Parameter block for the `minecraft {...}` Gradle script extension
@@ -16,6 +18,12 @@ public abstract class MinecraftExtension implements IMinecraftyExtension {
 
     public MinecraftExtension(Project project) {
         getSkipSlowTasks().convention(false);
+        getIntermediateJarCompression().convention(JarCompression.STORE);
+        getFinalJarCompression().convention(JarCompression.DEFAULT);
+        getUsePrebuiltWorkspace().convention(false);
+        getShareExtractedSources().convention(false);
+        getUseBinaryPatchedMinecraft().convention(false);
+        getUseLazySources().convention(false);
         applyMinecraftyConventions(project);
 
         getGroupsToExcludeFromAutoReobfMapping().set(Lists.newArrayList());
@@ -35,6 +43,53 @@ public abstract class MinecraftExtension implements IMinecraftyExtension {
      */
     public abstract Property<Boolean> getSkipSlowTasks();
 
+    /**
+     * Compression of the intermediate jars of the decompilation pipeline, which are deleted as soon as the next step
+     * has read them. STORE by default, so no CPU time is spent compressing them.
+     */
+    public abstract Property<JarCompression> getIntermediateJarCompression();
+
+    /**
+     * Compression of the jars RFG keeps around, like the decompiled sources and the patched Minecraft jar. DEFAULT by
+     * default, FAST trades some disk space for faster setups.
+     */
+    public abstract Property<JarCompression> getFinalJarCompression();
+
+    /**
+     * Set to true to look for a prebuilt workspace (the decompiled sources and recompiled Minecraft jar published by
+     * the publishPrebuiltWorkspace task) matching this setup in the project's repositories, and skip decompiling
+     * Minecraft if one is found. False by default.
+     */
+    public abstract Property<Boolean> getUsePrebuiltWorkspace();
+
+    /**
+     * A local Maven repository directory that publishPrebuiltWorkspace publishes to, it is also searched for prebuilt
+     * workspaces if {@link MinecraftExtension#getUsePrebuiltWorkspace()} is true.
+     */
+    public abstract DirectoryProperty getPrebuiltWorkspaceRepository();
+
+    /**
+     * Set to true to extract the decompiled sources only once per sources jar digest into the RFG cache, and link them
+     * into build/rfg/minecraft-src instead of copying them into every project. The linked files are read-only. False by
+     * default.
+     */
+    public abstract Property<Boolean> getShareExtractedSources();
+
+    /**
+     * Set to true to compile against the binary patched Minecraft jar remapped to MCP names instead of decompiling and
+     * recompiling the game. Meant for CI builds that never look at the Minecraft sources, fernflower and javac are
+     * skipped entirely. Requires Forge and can't be combined with injectMissingGenerics, false by default.
+     */
+    public abstract Property<Boolean> getUseBinaryPatchedMinecraft();
+
+    /**
+     * Set to true to compile against the binary patched Minecraft like {@link #getUseBinaryPatchedMinecraft()}, and
+     * only decompile the classes requested through the decompileMinecraftClasses task. Each class is decompiled once
+     * and stored in the RFG cache, meant for navigating the sources in an IDE without waiting for the whole game to be
+     * decompiled. False by default.
+     */
+    public abstract Property<Boolean> getUseLazySources();
+
     // Forge configs
 
     /**
@@ -5,6 +5,7 @@ import org.gradle.api.Project;
 import org.gradle.api.plugins.JavaLibraryPlugin;
 import org.gradle.util.GradleVersion;
 
+import com.gtnewhorizons.retrofuturagradle.mcp.MappingsService;
 import com.gtnewhorizons.retrofuturagradle.mcp.RfgCacheService;
 import com.gtnewhorizons.retrofuturagradle.minecraft.MinecraftTasks;
 import com.gtnewhorizons.retrofuturagradle.patchdev.PatchDevTasks;
@@ -22,6 +23,7 @@ public class PatchDevPlugin implements Plugin<Project> {
         }
 
         RfgCacheService.register(project.getGradle());
+        MappingsService.register(project.getGradle());
 
         // Register the obfuscation status attribute
         ObfuscationAttribute.configureProject(project);
@@ -10,6 +10,7 @@ import org.gradle.api.plugins.JavaLibraryPlugin;
 import org.gradle.util.GradleVersion;
 
 import com.gtnewhorizons.retrofuturagradle.mcp.MCPTasks;
+import com.gtnewhorizons.retrofuturagradle.mcp.MappingsService;
 import com.gtnewhorizons.retrofuturagradle.mcp.RfgCacheService;
 import com.gtnewhorizons.retrofuturagradle.minecraft.MinecraftTasks;
 import com.gtnewhorizons.retrofuturagradle.modutils.ModUtils;
@@ -33,6 +34,7 @@ public class UserDevPlugin implements Plugin<Project> {
         }
 
         RfgCacheService.register(project.getGradle());
+        MappingsService.register(project.getGradle());
 
         // Register the obfuscation status attribute
         ObfuscationAttribute.configureProject(project);
@@ -11,9 +11,13 @@ import static org.objectweb.asm.Opcodes.PUTFIELD;
 import static org.objectweb.asm.Opcodes.PUTSTATIC;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -21,11 +25,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
@@ -47,6 +53,11 @@ public class ReobfExceptor {
     public File methodCSV;
     public File fieldCSV;
     public File excConfig;
+    // optional, replace reading the csvs and the exc
+    public Map<String, String> csvNames;
+    public Map<String, String> excClassMarkers;
+    // optional, replaces reading the recompiled jar
+    public RecompInfo recompInfo;
 
     // state stuff
     Map<String, String> clsMap = Maps.newHashMap();
@@ -72,16 +83,39 @@ public class ReobfExceptor {
     public void doFirstThings() throws IOException {
         Map<String, String> csvData = readCSVs();
         JarInfo oldInfo = readJar(deobfJar);
-        JarInfo newInfo = readJar(toReobfJar);
+        RecompInfo newInfo = recompInfo != null ? recompInfo : readRecompInfo();
 
-        clsMap = createClassMap(newInfo.map, newInfo.interfaces);
+        clsMap = Maps.newHashMap(newInfo.clsMap);
         renameAccess(oldInfo.access, csvData);
-        access = mergeAccess(newInfo.access, oldInfo.access);
+        // mergeAccess removes the matched entries, so it gets a copy
+        access = mergeAccess(Maps.newHashMap(newInfo.access), oldInfo.access);
+    }
+
+    /**
+     * Reads the parts of the recompiled jar and the EXC that don't depend on the deobfuscated jar, so they can be
+     * reused between runs.
+     *
+     * @throws IOException because it reads the exc and jar files
+     */
+    public RecompInfo readRecompInfo() throws IOException {
+        JarInfo newInfo = readJar(toReobfJar);
+        return new RecompInfo(createClassMap(newInfo.map, newInfo.interfaces), newInfo.access);
+    }
+
+    /**
+     * @return If the deobfuscated jar has access methods that got matched up with the recompiled jar, the built SRG
+     *         depends on the deobfuscated jar then. Only valid after {@link #doFirstThings()}.
+     */
+    public boolean hasAccessRenames() {
+        return !access.isEmpty();
     }
 
     // Preliminary things here
 
     private Map<String, String> readCSVs() throws IOException {
+        if (csvNames != null) {
+            return csvNames;
+        }
         final Map<String, String> csvData = Maps.newHashMap();
         File[] csvs = new File[] { fieldCSV == null ? null : fieldCSV, methodCSV == null ? null : methodCSV };
 
@@ -146,26 +180,10 @@ public class ReobfExceptor {
 
     private Map<String, String> createClassMap(Map<String, String> markerMap, final List<String> interfaces)
             throws IOException {
-        Map<String, String> excMap = Files
-                .readLines(excConfig, Charset.defaultCharset(), new LineProcessor<Map<String, String>>() {
-
-                    Map<String, String> tmp = Maps.newHashMap();
-
-                    @Override
-                    public boolean processLine(String line) throws IOException {
-                        if (line.contains(".") || !line.contains("=") || line.startsWith("#")) return true;
-
-                        String[] s = line.split("=");
-                        if (!interfaces.contains(s[0])) tmp.put(s[0], s[1] + "_");
-
-                        return true;
-                    }
-
-                    @Override
-                    public Map<String, String> getResult() {
-                        return tmp;
-                    }
-                });
+        Map<String, String> excMap = Maps.newHashMap();
+        for (Entry<String, String> e : readExcClassMarkers().entrySet()) {
+            if (!interfaces.contains(e.getKey())) excMap.put(e.getKey(), e.getValue() + "_");
+        }
 
         Map<String, String> map = Maps.newHashMap();
         for (Entry<String, String> e : excMap.entrySet()) {
@@ -177,6 +195,31 @@ public class ReobfExceptor {
         return map;
     }
 
+    private Map<String, String> readExcClassMarkers() throws IOException {
+        if (excClassMarkers != null) {
+            return excClassMarkers;
+        }
+        return Files.readLines(excConfig, Charset.defaultCharset(), new LineProcessor<Map<String, String>>() {
+
+            Map<String, String> tmp = Maps.newHashMap();
+
+            @Override
+            public boolean processLine(String line) throws IOException {
+                if (line.contains(".") || !line.contains("=") || line.startsWith("#")) return true;
+
+                String[] s = line.split("=");
+                tmp.put(s[0], s[1]);
+
+                return true;
+            }
+
+            @Override
+            public Map<String, String> getResult() {
+                return tmp;
+            }
+        });
+    }
+
     private Map<String, String> mergeAccess(Map<String, AccessInfo> old_data, Map<String, AccessInfo> new_data) {
         // Lets remove things that are mapped exactly right:
         // System.out.println("Matches:");
@@ -333,6 +376,85 @@ public class ReobfExceptor {
         }
     }
 
+    /**
+     * The class renames and access methods of the recompiled jar, immutable once created.
+     */
+    public static final class RecompInfo {
+
+        public static final int FORMAT_VERSION = 1;
+
+        private static final int MAGIC = 0x52464758; // RFGX
+
+        private final Map<String, String> clsMap;
+        private final Map<String, AccessInfo> access;
+
+        private RecompInfo(Map<String, String> clsMap, Map<String, AccessInfo> access) {
+            this.clsMap = clsMap;
+            this.access = access;
+        }
+
+        public void write(File target) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(target)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                // Sorted so that the same jar always produces the same file
+                final Map<String, String> sortedClsMap = new TreeMap<>(clsMap);
+                out.writeInt(sortedClsMap.size());
+                for (Entry<String, String> e : sortedClsMap.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeUTF(e.getValue());
+                }
+                final Map<String, AccessInfo> sortedAccess = new TreeMap<>(access);
+                out.writeInt(sortedAccess.size());
+                for (Entry<String, AccessInfo> e : sortedAccess.entrySet()) {
+                    final AccessInfo info = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeUTF(info.owner);
+                    out.writeUTF(info.name);
+                    out.writeUTF(info.desc);
+                    out.writeInt(info.access);
+                    out.writeInt(info.insns.size());
+                    for (Insn insn : info.insns) {
+                        out.writeInt(insn.opcode);
+                        out.writeUTF(insn.owner);
+                        out.writeUTF(insn.name);
+                        out.writeUTF(insn.desc);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The info stored in the given file, or null if it was written by an incompatible version.
+         */
+        public static @Nullable RecompInfo read(File source) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                    return null;
+                }
+                final int clsCount = in.readInt();
+                final Map<String, String> clsMap = Maps.newHashMapWithExpectedSize(clsCount);
+                for (int c = 0; c < clsCount; c++) {
+                    clsMap.put(in.readUTF(), in.readUTF());
+                }
+                final int accessCount = in.readInt();
+                final Map<String, AccessInfo> access = Maps.newHashMapWithExpectedSize(accessCount);
+                for (int a = 0; a < accessCount; a++) {
+                    final String path = in.readUTF();
+                    final AccessInfo info = new AccessInfo(in.readUTF(), in.readUTF(), in.readUTF());
+                    info.access = in.readInt();
+                    final int insnCount = in.readInt();
+                    for (int i = 0; i < insnCount; i++) {
+                        info.add(in.readInt(), in.readUTF(), in.readUTF(), in.readUTF());
+                    }
+                    access.put(path, info);
+                }
+                return new RecompInfo(clsMap, access);
+            }
+        }
+    }
+
     @SuppressWarnings("unused")
     private static class AccessInfo {
 
@@ -12,6 +12,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -24,9 +26,11 @@ import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
@@ -44,10 +48,13 @@ import com.gtnewhorizons.retrofuturagradle.fgpatchers.McpCleanupFg12;
 import com.gtnewhorizons.retrofuturagradle.fgpatchers.McpCleanupFg23;
 import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
 import com.gtnewhorizons.retrofuturagradle.util.IJarTransformTask;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
 import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+import com.gtnewhorizons.retrofuturagradle.util.patching.CompiledPatchSet;
 import com.gtnewhorizons.retrofuturagradle.util.patching.ContextualPatch;
 
+@CacheableTask
 public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJarTransformTask {
 
     private Map<String, byte[]> loadedResources = new HashMap<>();
@@ -69,6 +76,18 @@ public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJ
     @PathSensitive(PathSensitivity.RELATIVE)
     public abstract DirectoryProperty getPatchesInjectDir();
 
+    /**
+     * Skip the MCP patches of files not present in the input jar, for cleaning up only a few decompiled classes.
+     */
+    @Input
+    public abstract Property<Boolean> getSkipMissingTargets();
+
+    /**
+     * Optional cache to store the pre-parsed MCP patches in, if not set the patches are parsed on every run.
+     */
+    @Internal
+    public abstract Property<RfgCacheService> getCacheService();
+
     @Override
     public MessageDigestConsumer hashInputs() {
         return HashUtils.addPropertyToHash(getPatches()).andThen(HashUtils.addPropertyToHash(getAstyleConfig()))
@@ -81,6 +100,7 @@ public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJ
     @Inject
     public CleanupDecompiledJarTask() {
         getMinorMcVersion().convention(7);
+        getSkipMissingTargets().convention(false);
     }
 
     @TaskAction
@@ -117,7 +137,18 @@ public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJ
         }
 
         getLogger().lifecycle("Saving the fixed-up jar");
-        Utilities.saveMemoryJar(loadedResources, loadedSources, getOutputJar().get().getAsFile(), false);
+        Utilities.saveMemoryJar(
+                loadedResources,
+                loadedSources,
+                getOutputJar().get().getAsFile(),
+                getJarCompression().getOrElse(JarCompression.DEFAULT));
+    }
+
+    /** Fails like {@link Collectors#toConcurrentMap} did on duplicate source paths, instead of dropping one */
+    private static BinaryOperator<String> duplicateSource() {
+        return (a, b) -> {
+            throw new IllegalStateException("Duplicate source file in the decompiled jar");
+        };
     }
 
     private File loadAndApplyFfPatches(File decompiled) throws IOException {
@@ -136,16 +167,20 @@ public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJ
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        }).collect(Collectors.toConcurrentMap(MutablePair::getLeft, MutablePair::getRight));
+        }).collect(Collectors.toMap(MutablePair::getLeft, MutablePair::getRight, duplicateSource(), TreeMap::new));
 
         return Utilities.saveMemoryJar(loadedResources, loadedSources, new File(taskTempDir, "ffpatcher.jar"), true);
     }
 
     private File applyMcpPatches() throws IOException {
-        Multimap<String, File> patches = ArrayListMultimap.create();
-        Set<File> patchDir = getPatches().get().getAsFileTree().filter(f -> f.getName().contains(".patch")).getFiles();
-        for (File patchFile : patchDir) {
-            String base = patchFile.getName();
+        final File patchDir = getPatches().get().getAsFile();
+        final RfgCacheService cacheService = getCacheService().getOrNull();
+        final CompiledPatchSet patchSet = (cacheService != null)
+                ? cacheService.accessCompiledPatchSet(patchDir, ".patch")
+                : CompiledPatchSet.compile(CompiledPatchSet.readPatchBundle(patchDir, ".patch"));
+        Multimap<String, CompiledPatchSet.Entry> patches = ArrayListMultimap.create();
+        for (CompiledPatchSet.Entry patchFile : patchSet.getEntries()) {
+            String base = patchFile.getName().substring(patchFile.getName().lastIndexOf('/') + 1);
             final int extLoc = base.lastIndexOf(".patch");
             base = base.substring(0, extLoc + ".patch".length());
             patches.put(base, patchFile);
@@ -153,13 +188,12 @@ public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJ
 
         for (String key : patches.keySet()) {
             // Apply first non-failing patch
-            final Collection<File> patchFiles = patches.get(key);
+            final Collection<CompiledPatchSet.Entry> patchFiles = patches.get(key);
             ContextualPatch patch = null;
-            for (File patchFile : patchFiles) {
-                patch = ContextualPatch.create(
-                        FileUtils.readFileToString(patchFile, StandardCharsets.UTF_8),
-                        new Utilities.InMemoryJarContextProvider(loadedSources, 1));
+            for (CompiledPatchSet.Entry patchFile : patchFiles) {
+                patch = patchFile.createPatch(new Utilities.InMemoryJarContextProvider(loadedSources, 1));
                 patch.setAccessC14N(true);
+                patch.setSkipMissingTargets(getSkipMissingTargets().get());
                 final List<ContextualPatch.PatchReport> errors;
                 try {
                     errors = patch.patch(true);
@@ -257,7 +291,7 @@ public abstract class CleanupDecompiledJarTask extends DefaultTask implements IJ
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        }).collect(Collectors.toConcurrentMap(MutablePair::getLeft, MutablePair::getRight));
+        }).collect(Collectors.toMap(MutablePair::getLeft, MutablePair::getRight, duplicateSource(), TreeMap::new));
 
         return Utilities.saveMemoryJar(loadedResources, loadedSources, new File(taskTempDir, "mcpcleanup.jar"), true);
     }
@@ -0,0 +1,104 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * Stores the freshly decompiled classes in the RFG cache, and writes the sources of every class requested so far into
+ * the lazy sources jar.
+ */
+@DisableCachingByDefault(because = "Depends on the contents of the RFG cache")
+public abstract class CollectLazySourcesTask extends DefaultTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSrgJar();
+
+    /**
+     * The output of {@link SelectLazyClassesTask}, the classes that went through the decompilation chain in this build.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSelectedJar();
+
+    /**
+     * The remapped sources of the selected classes, only read if any classes were selected.
+     */
+    @Internal
+    public abstract RegularFileProperty getRemappedJar();
+
+    @Internal
+    public abstract RegularFileProperty getClassListFile();
+
+    @Input
+    public abstract Property<String> getWorkspaceDigest();
+
+    @Internal
+    public abstract Property<RfgCacheService> getCacheService();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputJar();
+
+    public CollectLazySourcesTask() {
+        getOutputs().upToDateWhen(t -> false);
+    }
+
+    @TaskAction
+    public void collectSources() throws IOException {
+        final Set<String> classes = LazySources.readClassList(getClassListFile().get().getAsFile());
+        final Map<String, String> keys = LazySources
+                .computeClassKeys(getSrgJar().get().getAsFile(), getWorkspaceDigest().get(), classes);
+        final RfgCacheService cacheService = getCacheService().get();
+
+        if (LazySources.hasClasses(getSelectedJar().get().getAsFile())) {
+            final Map<String, String> remappedSources = new HashMap<>();
+            Utilities.loadMemoryJar(getRemappedJar().get().getAsFile(), new HashMap<>(), remappedSources);
+            for (Map.Entry<String, String> classKey : keys.entrySet()) {
+                final String source = remappedSources.get(LazySources.toSourcePath(classKey.getKey()));
+                if (source != null) {
+                    cacheService.storeDecompiledClass(classKey.getValue(), source);
+                }
+            }
+        }
+
+        final File outputJar = getOutputJar().get().getAsFile();
+        FileUtils.deleteQuietly(outputJar);
+        int missing = 0;
+        try (final JarWriter out = new JarWriter(
+                outputJar,
+                JarWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES,
+                JarCompression.FAST)) {
+            for (Map.Entry<String, String> classKey : keys.entrySet()) {
+                final String source = cacheService.findDecompiledClass(classKey.getValue());
+                if (source == null) {
+                    missing++;
+                    getLogger().warn("Could not decompile {}", classKey.getKey().replace('/', '.'));
+                    continue;
+                }
+                out.write(LazySources.toSourcePath(classKey.getKey()), source.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        getLogger().lifecycle("Lazy sources jar contains {} classes", keys.size() - missing);
+    }
+}
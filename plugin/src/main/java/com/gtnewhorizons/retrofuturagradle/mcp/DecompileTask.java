@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 import javax.inject.Inject;
 
@@ -19,27 +18,26 @@ import org.gradle.api.Project;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.CompileClasspath;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
-import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.jvm.toolchain.JavaLauncher;
 import org.gradle.process.JavaForkOptions;
-import org.gradle.work.DisableCachingByDefault;
 import org.gradle.workers.WorkAction;
 import org.gradle.workers.WorkParameters;
 import org.gradle.workers.WorkQueue;
 import org.gradle.workers.WorkerExecutor;
 
 import com.gtnewhorizons.retrofuturagradle.Constants;
-import com.gtnewhorizons.retrofuturagradle.MinecraftExtension;
 import com.gtnewhorizons.retrofuturagradle.fg23shadow.org.jetbrains.java.decompiler.main.DecompilerContext;
 import com.gtnewhorizons.retrofuturagradle.fg23shadow.org.jetbrains.java.decompiler.main.decompiler.BaseDecompiler;
 import com.gtnewhorizons.retrofuturagradle.fg23shadow.org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
@@ -51,10 +49,14 @@ import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
 import com.gtnewhorizons.retrofuturagradle.util.IJarTransformTask;
 import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
 
-@DisableCachingByDefault(because = "Uses an internal caching mechanism")
+@CacheableTask
 public abstract class DecompileTask extends DefaultTask implements IJarTransformTask {
 
-    @OutputDirectory
+    /**
+     * Machine-local cache of decompiled jars shared between projects, not an output so that the task stays cacheable in
+     * the Gradle build cache.
+     */
+    @Internal
     public abstract DirectoryProperty getCacheDir();
 
     @InputFile
@@ -65,6 +67,12 @@ public abstract class DecompileTask extends DefaultTask implements IJarTransform
     @Input
     public abstract Property<Integer> getMinorMcVersion();
 
+    /**
+     * Command line arguments for the standalone fernflower used for MC 1.7/1.8.
+     */
+    @Input
+    public abstract ListProperty<String> getFernflowerArguments();
+
     @InputFiles
     @CompileClasspath
     public abstract ConfigurableFileCollection getClasspath();
@@ -82,7 +90,8 @@ public abstract class DecompileTask extends DefaultTask implements IJarTransform
 
     @Override
     public MessageDigestConsumer hashInputs() {
-        return HashUtils.addPropertyToHash(getFernflower());
+        return HashUtils.addPropertyToHash(getFernflower())
+                .andThen(HashUtils.addPropertyToHash(getFernflowerArguments()));
     }
 
     @Inject
@@ -97,7 +106,10 @@ public abstract class DecompileTask extends DefaultTask implements IJarTransform
         final int minorMcVer = getMinorMcVersion().get();
 
         final DigestUtils digests = new DigestUtils(DigestUtils.getSha256Digest());
-        final String fernflowerChecksum = (minorMcVer <= 8) ? digests.digestAsHex(getFernflower().get().getAsFile())
+        // The arguments are only passed to the standalone fernflower, they change its output so they're part of the key
+        final String fernflowerChecksum = (minorMcVer <= 8)
+                ? digests.digestAsHex(getFernflower().get().getAsFile()) + "-"
+                        + digests.digestAsHex(String.join("\n", getFernflowerArguments().get()))
                 : "1.0.342";
         final String inputFileChecksum = digests.digestAsHex(getInputJar().get().getAsFile());
         final File cachedOutputFile = new File(
@@ -147,8 +159,7 @@ public abstract class DecompileTask extends DefaultTask implements IJarTransform
     private void decompileFg12(Project project, File ffoutdir, File ffinpcopy) {
         project.javaexec(exec -> {
             exec.classpath(getFernflower().get());
-            MinecraftExtension mcExt = project.getExtensions().findByType(MinecraftExtension.class);
-            List<String> args = new ArrayList<>(Objects.requireNonNull(mcExt).getFernflowerArguments().get());
+            List<String> args = new ArrayList<>(getFernflowerArguments().get());
             args.add(ffinpcopy.getAbsolutePath());
             args.add(ffoutdir.getAbsolutePath());
             exec.args(args);
@@ -5,35 +5,28 @@ import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
 import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Comparator;
-import java.util.GregorianCalendar;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
 import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import javax.inject.Inject;
 
-import org.apache.commons.collections4.iterators.EnumerationIterator;
-import org.apache.commons.collections4.iterators.IteratorIterable;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang3.tuple.Pair;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.Project;
 import org.gradle.api.file.ConfigurableFileCollection;
@@ -43,6 +36,7 @@ import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
@@ -53,18 +47,21 @@ import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
 import com.gtnewhorizons.retrofuturagradle.Constants;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.de.oceanlabs.mcp.mcinjector.MCInjectorImpl;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.Jar;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.JarMapping;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.JarRemapper;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.RemapperProcessor;
-import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.provider.JarProvider;
-import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.provider.JointProvider;
 import com.gtnewhorizons.retrofuturagradle.fg23shadow.de.oceanlabs.mcp.mcinjector.LVTNaming;
 import com.gtnewhorizons.retrofuturagradle.json.MCInjectorStruct;
+import com.gtnewhorizons.retrofuturagradle.util.ClassHierarchyIndex;
+import com.gtnewhorizons.retrofuturagradle.util.CompiledAccessTransformers;
 import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
 import com.gtnewhorizons.retrofuturagradle.util.IJarTransformTask;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
 import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
 import com.gtnewhorizons.retrofuturagradle.util.RenamedAccessMapFG12;
 import com.gtnewhorizons.retrofuturagradle.util.RenamedAccessMapFG23;
@@ -109,6 +106,20 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
     @Input
     public abstract Property<Integer> getMinorMcVersion();
 
+    /**
+     * Runs the original SpecialSource, MCInjector and cleanup steps as separate jar transforms instead of the
+     * single-pass {@link SinglePassDeobfuscator}, useful to compare the outputs. MC 1.9+ always uses the original
+     * steps.
+     */
+    @Input
+    public abstract Property<Boolean> getIsUsingLegacyPipeline();
+
+    /**
+     * Optional service to share the parsed mapping files with other tasks, if not set they are parsed on every run.
+     */
+    @Internal
+    public abstract Property<MappingsService> getMappingsService();
+
     @Override
     public MessageDigestConsumer hashInputs() {
         return HashUtils.addPropertyToHash(getAccessTransformerFiles())
@@ -118,16 +129,21 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
                 .andThen(HashUtils.addPropertyToHash(getExceptorJson()))
                 .andThen(HashUtils.addPropertyToHash(getIsApplyingMarkers()))
                 .andThen(HashUtils.addPropertyToHash(getIsStrippingSynthetics()))
-                .andThen(HashUtils.addPropertyToHash(getMinorMcVersion()));
+                .andThen(HashUtils.addPropertyToHash(getMinorMcVersion()))
+                .andThen(HashUtils.addPropertyToHash(getIsUsingLegacyPipeline()));
     }
 
     private File taskTempDir;
 
+    // Without the pretty printing of Utilities.GSON, MCInjector has less to parse
+    private static final Gson COMPACT_GSON = new Gson();
+
     @Inject
     public DeobfuscateTask(Project proj) {
         getIsStrippingSynthetics().convention(false);
         getIsApplyingMarkers().convention(false);
         getMinorMcVersion().convention(7);
+        getIsUsingLegacyPipeline().convention(false);
     }
 
     @TaskAction
@@ -137,17 +153,23 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
         final File deobfedJar = new File(taskTempDir, "deobf.jar");
         final File exceptedJar = new File(taskTempDir, "excepted.jar");
         final int mcMinor = getMinorMcVersion().get();
+        final Set<File> atFiles = new ImmutableSet.Builder<File>().addAll(getAccessTransformerFiles()).build();
+        final CompiledAccessTransformers ats = loadAccessTransformers(atFiles);
+
+        if (mcMinor <= 8 && !getIsUsingLegacyPipeline().get()) {
+            deobfuscateSinglePass(ats);
+            return;
+        }
 
         getLogger().lifecycle("Applying SpecialSource");
-        final Set<File> atFiles = new ImmutableSet.Builder<File>().addAll(getAccessTransformerFiles()).build();
         if (mcMinor <= 8) {
-            applySpecialSourceFG12(deobfedJar, atFiles);
+            applySpecialSourceFG12(deobfedJar, ats);
         } else {
-            applySpecialSourceFG23(deobfedJar, atFiles);
+            applySpecialSourceFG23(deobfedJar, ats);
         }
 
         getLogger().lifecycle("Applying Exceptor");
-        applyExceptor(deobfedJar, exceptedJar, new File(taskTempDir, "deobf.log"), atFiles, mcMinor);
+        applyExceptor(deobfedJar, exceptedJar, new File(taskTempDir, "deobf.log"), ats, mcMinor);
 
         final boolean isStrippingSynths = getIsStrippingSynthetics().get();
         getLogger()
@@ -161,15 +183,48 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
         }
     }
 
-    private void applySpecialSourceFG12(File tempDeobfJar, Set<File> atFiles) throws IOException {
-        final File originalInputFile = getInputJar().get().getAsFile();
-        // Work on a copy to make sure the original jar doesn't get modified
-        final File inputFile = new File(taskTempDir, "input.jar");
-        FileUtils.copyFile(originalInputFile, inputFile);
+    private void deobfuscateSinglePass(CompiledAccessTransformers ats) throws IOException {
         final JarMapping mapping = new JarMapping();
         mapping.loadMappings(getSrgFile().get().getAsFile());
+        final RenamedAccessMapFG12 accessMap = loadAccessMapFG12(ats);
+
+        final Properties exceptorCfg = new Properties();
+        try (final Reader reader = Files.newBufferedReader(getExceptorCfg().get().getAsFile().toPath())) {
+            exceptorCfg.load(reader);
+        }
+        final Map<String, MCInjectorStruct> exceptorJson = getExceptorJson().isPresent() ? loadExceptorJson(ats)
+                : null;
+
+        final boolean isStrippingSynths = getIsStrippingSynthetics().get();
+        getLogger().lifecycle(
+                "Deobfuscating in a single pass: SpecialSource, Exceptor{}",
+                isStrippingSynths ? " and stripping synthetics" : "");
+        final SinglePassDeobfuscator deobfuscator = new SinglePassDeobfuscator(
+                mapping,
+                accessMap,
+                exceptorCfg,
+                exceptorJson,
+                getIsApplyingMarkers().get(),
+                isStrippingSynths);
+        final int classCount = deobfuscator.process(
+                getInputJar().get().getAsFile(),
+                getOutputJar().get().getAsFile(),
+                getJarCompression().getOrElse(JarCompression.DEFAULT));
+        getLogger().lifecycle("Deobfuscated {} classes", classCount);
+    }
+
+    /**
+     * @return SRG->MCP names of fields and methods, used to rename the access transformer entries
+     */
+    private Map<String, String> loadRenames() throws IOException {
+        final File fieldCsv = getFieldCsv().getAsFile().getOrNull();
+        final File methodCsv = getMethodCsv().getAsFile().getOrNull();
+        final MappingsService mappingsService = getMappingsService().getOrNull();
+        if (mappingsService != null && fieldCsv != null && methodCsv != null) {
+            return mappingsService.getCsvMappings(methodCsv, fieldCsv, null, null).getMemberNames();
+        }
         final Map<String, String> renames = new HashMap<>();
-        for (File f : new File[] { getFieldCsv().getAsFile().getOrNull(), getMethodCsv().getAsFile().getOrNull() }) {
+        for (File f : new File[] { fieldCsv, methodCsv }) {
             if (f == null) {
                 continue;
             }
@@ -180,15 +235,17 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
                 }
             });
         }
+        return renames;
+    }
 
-        // Load access transformers
-        getLogger().lifecycle("Loading {} AccessTransformers", atFiles.size());
-        RenamedAccessMapFG12 accessMap = new RenamedAccessMapFG12(renames);
-        for (File atFile : atFiles) {
-            getLogger().info("{}", atFile.getPath());
-            accessMap.loadAccessTransformer(atFile);
-        }
-        getLogger().lifecycle("Renamed {} AT entries", accessMap.getRenameCount());
+    private void applySpecialSourceFG12(File tempDeobfJar, CompiledAccessTransformers ats) throws IOException {
+        final File originalInputFile = getInputJar().get().getAsFile();
+        // Work on a copy to make sure the original jar doesn't get modified
+        final File inputFile = new File(taskTempDir, "input.jar");
+        FileUtils.copyFile(originalInputFile, inputFile);
+        final JarMapping mapping = new JarMapping();
+        mapping.loadMappings(getSrgFile().get().getAsFile());
+        final RenamedAccessMapFG12 accessMap = loadAccessMapFG12(ats);
 
         final RemapperProcessor srgProcessor = new RemapperProcessor(null, mapping, null);
         final RemapperProcessor atProcessor = new RemapperProcessor(null, null, accessMap);
@@ -196,9 +253,7 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
 
         final Jar input = Jar.init(inputFile);
         try {
-            final JointProvider inheritanceProviders = new JointProvider();
-            inheritanceProviders.add(new JarProvider(input));
-            mapping.setFallbackInheritanceProvider(inheritanceProviders);
+            mapping.setFallbackInheritanceProvider(loadClassHierarchy(originalInputFile)::getParents);
             remapper.remapJar(input, tempDeobfJar);
         } finally {
             try {
@@ -223,33 +278,37 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
         }
     }
 
-    private void applySpecialSourceFG23(File tempDeobfJar, Set<File> atFiles) throws IOException {
+    private ClassHierarchyIndex loadClassHierarchy(File jar) throws IOException {
+        final MappingsService mappingsService = getMappingsService().getOrNull();
+        return (mappingsService != null) ? mappingsService.getClassHierarchyIndex(jar) : ClassHierarchyIndex.build(jar);
+    }
+
+    private CompiledAccessTransformers loadAccessTransformers(Set<File> atFiles) throws IOException {
+        getLogger().lifecycle("Loading {} AccessTransformers", atFiles.size());
+        for (File atFile : atFiles) {
+            getLogger().info("{}", atFile.getPath());
+        }
+        final MappingsService mappingsService = getMappingsService().getOrNull();
+        return (mappingsService != null) ? mappingsService.getAccessTransformers(atFiles)
+                : CompiledAccessTransformers.parse(atFiles);
+    }
+
+    private RenamedAccessMapFG12 loadAccessMapFG12(CompiledAccessTransformers ats) throws IOException {
+        final RenamedAccessMapFG12 accessMap = new RenamedAccessMapFG12(loadRenames());
+        ats.forEachAccessChange(accessMap::addAccessChange);
+        getLogger().lifecycle("Renamed {} AT entries", accessMap.getRenameCount());
+        return accessMap;
+    }
+
+    private void applySpecialSourceFG23(File tempDeobfJar, CompiledAccessTransformers ats) throws IOException {
         final File originalInputFile = getInputJar().get().getAsFile();
         // Work on a copy to make sure the original jar doesn't get modified
         final File inputFile = new File(taskTempDir, "input.jar");
         FileUtils.copyFile(originalInputFile, inputFile);
         final com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.JarMapping mapping = new com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.JarMapping();
         mapping.loadMappings(getSrgFile().get().getAsFile());
-        final Map<String, String> renames = new HashMap<>();
-        for (File f : new File[] { getFieldCsv().getAsFile().getOrNull(), getMethodCsv().getAsFile().getOrNull() }) {
-            if (f == null) {
-                continue;
-            }
-            FileUtils.lineIterator(f).forEachRemaining(line -> {
-                String[] parts = line.split(",");
-                if (!"searge".equals(parts[0])) {
-                    renames.put(parts[0], parts[1]);
-                }
-            });
-        }
-
-        // Load access transformers
-        getLogger().lifecycle("Loading {} AccessTransformers", atFiles.size());
-        RenamedAccessMapFG23 accessMap = new RenamedAccessMapFG23(renames);
-        for (File atFile : atFiles) {
-            getLogger().info("{}", atFile.getPath());
-            accessMap.loadAccessTransformer(atFile);
-        }
+        final RenamedAccessMapFG23 accessMap = new RenamedAccessMapFG23(loadRenames());
+        ats.forEachAccessChange(accessMap::addAccessChange);
         getLogger().lifecycle("Renamed {} AT entries", accessMap.getRenameCount());
 
         final com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.RemapperProcessor srgProcessor = new com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.RemapperProcessor(
@@ -267,11 +326,7 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
 
         try (final com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.Jar input = com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.Jar
                 .init(inputFile)) {
-            final com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.provider.JointProvider inheritanceProviders = new com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.provider.JointProvider();
-            inheritanceProviders.add(
-                    new com.gtnewhorizons.retrofuturagradle.fg23shadow.net.md_5.specialsource.provider.JarProvider(
-                            input));
-            mapping.setFallbackInheritanceProvider(inheritanceProviders);
+            mapping.setFallbackInheritanceProvider(loadClassHierarchy(originalInputFile)::getParents);
             remapper.remapJar(input, tempDeobfJar);
         }
 
@@ -281,53 +336,27 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
         }
     }
 
-    private void applyExceptor(File deobfJar, File tempExceptorJar, File logFile, Set<File> atFiles, int mcMinor)
-            throws IOException {
+    private void applyExceptor(File deobfJar, File tempExceptorJar, File logFile, CompiledAccessTransformers ats,
+            int mcMinor) throws IOException {
         String json = null;
         if (getExceptorJson().isPresent()) {
-            File exceptorJsonFile = getExceptorJson().get().getAsFile();
-            final Map<String, MCInjectorStruct> struct = MCInjectorStruct.loadMCIJson(exceptorJsonFile);
-            // TODO: Make this more readable, it's currently mostly a copy directly from FG
-            for (File atFile : atFiles) {
-                try (final FileInputStream fis = new FileInputStream(atFile);
-                        final BufferedInputStream bis = new BufferedInputStream(fis);
-                        final LineIterator lines = IOUtils.lineIterator(bis, StandardCharsets.UTF_8)) {
-                    while (lines.hasNext()) {
-                        // eg. "a.foo/bar ()desc # comment"
-                        String line = lines.nextLine();
-                        int commentIdx = line.indexOf('#');
-                        if (commentIdx != -1) {
-                            line = line.substring(0, commentIdx);
-                        }
-                        line = line.trim().replace('.', '/');
-                        // now it's "a/foo/bar ()desc"
-                        if (line.isEmpty()) continue;
-                        String[] s = line.split(" ");
-                        if (s.length == 2 && s[1].indexOf('$') > 0) {
-                            String parent = s[1].substring(0, s[1].indexOf('$'));
-                            for (MCInjectorStruct cls : new MCInjectorStruct[] { struct.get(parent),
-                                    struct.get(s[1]) }) {
-                                if (cls != null && cls.innerClasses != null) {
-                                    for (MCInjectorStruct.InnerClass inner : cls.innerClasses) {
-                                        if (inner.inner_class.equals(s[1])) {
-                                            int access = fixAccess(inner.getAccess(), s[0]);
-                                            inner.access = (access == 0 ? null : Integer.toHexString(access));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
+            final File jsonFile = getExceptorJson().get().getAsFile();
+            final Map<String, MCInjectorStruct> struct = MCInjectorStruct.loadMCIJson(jsonFile);
+            boolean modified = applyInnerClassAccess(struct, ats);
             if (mcMinor > 8) {
-                removeUnknownClasses(deobfJar, struct);
+                modified |= removeUnknownClasses(deobfJar, struct);
             }
 
-            File tmpJsonFile = new File(taskTempDir, "transformed.json");
-            json = tmpJsonFile.getCanonicalPath();
-            FileUtils.write(tmpJsonFile, Utilities.GSON.toJson(struct), StandardCharsets.UTF_8);
+            if (modified) {
+                // MCInjector only takes the json as a file path
+                final File tmpJsonFile = new File(taskTempDir, "transformed.json");
+                json = tmpJsonFile.getCanonicalPath();
+                try (final Writer writer = Files.newBufferedWriter(tmpJsonFile.toPath(), StandardCharsets.UTF_8)) {
+                    COMPACT_GSON.toJson(struct, writer);
+                }
+            } else {
+                json = jsonFile.getCanonicalPath();
+            }
         }
 
         // Silence MCI logs
@@ -359,9 +388,44 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
         }
     }
 
+    /**
+     * @return The exceptor json, with the inner class access flags changed by the access transformers
+     */
+    private Map<String, MCInjectorStruct> loadExceptorJson(CompiledAccessTransformers ats) throws IOException {
+        final Map<String, MCInjectorStruct> struct = MCInjectorStruct.loadMCIJson(getExceptorJson().get().getAsFile());
+        applyInnerClassAccess(struct, ats);
+        return struct;
+    }
+
+    /**
+     * @return If any inner class access flag in the exceptor json was changed
+     */
+    private boolean applyInnerClassAccess(Map<String, MCInjectorStruct> struct, CompiledAccessTransformers ats) {
+        boolean modified = false;
+        for (CompiledAccessTransformers.Entry entry : ats.getInnerClassEntries()) {
+            final String innerClass = entry.getInnerClassName();
+            final String parent = innerClass.substring(0, innerClass.indexOf('$'));
+            for (MCInjectorStruct cls : new MCInjectorStruct[] { struct.get(parent), struct.get(innerClass) }) {
+                if (cls == null || cls.innerClasses == null) {
+                    continue;
+                }
+                for (MCInjectorStruct.InnerClass inner : cls.innerClasses) {
+                    if (inner.inner_class.equals(innerClass)) {
+                        final int access = fixAccess(inner.getAccess(), entry.getAccess());
+                        final String newAccess = (access == 0 ? null : Integer.toHexString(access));
+                        modified |= !Objects.equals(inner.access, newAccess);
+                        inner.access = newAccess;
+                    }
+                }
+            }
+        }
+        return modified;
+    }
+
     // FG2.3
-    private void removeUnknownClasses(File inJar, Map<String, MCInjectorStruct> config) throws IOException {
-        try (ZipFile zip = new ZipFile(inJar)) {
+    private boolean removeUnknownClasses(File inJar, Map<String, MCInjectorStruct> config) throws IOException {
+        boolean modified = false;
+        try (ZipFile zip = JarWriter.openArchive(inJar)) {
             Iterator<Map.Entry<String, MCInjectorStruct>> entries = config.entrySet().iterator();
             while (entries.hasNext()) {
                 Map.Entry<String, MCInjectorStruct> entry = entries.next();
@@ -370,6 +434,7 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
                 // Verify the configuration contains only classes we actually have
                 if (zip.getEntry(className + ".class") == null) {
                     entries.remove();
+                    modified = true;
                     continue;
                 }
 
@@ -382,60 +447,54 @@ public abstract class DeobfuscateTask extends DefaultTask implements IJarTransfo
                         MCInjectorStruct.InnerClass innerClass = innerClasses.next();
                         if (zip.getEntry(innerClass.inner_class + ".class") == null) {
                             innerClasses.remove();
+                            modified = true;
                         }
                     }
                 }
             }
         }
+        return modified;
     }
 
-    /**
-     * Copied from Gradle ZipCopyAction internals. Note that setting the January 1st 1980 (or even worse, "0", as time)
-     * won't work due to Java 8 doing some interesting time processing: It checks if this date is before January 1st
-     * 1980 and if it is it starts setting some extra fields in the zip. Java 7 does not do that - but in the zip not
-     * the milliseconds are saved but values for each of the date fields - but no time zone. And 1980 is the first year
-     * which can be saved. If you use January 1st 1980 then it is treated as a special flag in Java 8. Moreover, only
-     * even seconds can be stored in the zip file. Java 8 uses the upper half of some other long to store the remaining
-     * millis while Java 7 doesn't do that. So make sure that your seconds are even. Moreover, parsing happens via `new
-     * Date(millis)` in java.util.zip.ZipUtils#javaToDosTime() so we must use default timezone and locale. The date is
-     * 1980 February 1st CET.
-     */
-    public static final long CONSTANT_TIME_FOR_ZIP_ENTRIES = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0)
-            .getTimeInMillis();
+    /** Kept for compatibility, see {@link JarWriter#CONSTANT_TIME_FOR_ZIP_ENTRIES} */
+    public static final long CONSTANT_TIME_FOR_ZIP_ENTRIES = JarWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES;
 
     private void cleanupJar(File inputJar, File outputJar, boolean stripSynthetics) throws IOException {
-        try (final ZipFile inZip = new ZipFile(inputJar);
-                final FileOutputStream fos = new FileOutputStream(outputJar);
-                final BufferedOutputStream bos = new BufferedOutputStream(fos);
-                final ZipOutputStream out = new ZipOutputStream(bos)) {
-            final ArrayList<ZipEntry> inputEntries = new ArrayList<>(inZip.size());
-            for (ZipEntry entry : new IteratorIterable<>(new EnumerationIterator<>(inZip.entries()))) {
-                if (entry.getName().contains("META-INF")) continue;
-                inputEntries.add(entry);
-            }
+        try (final ZipFile inZip = JarWriter.openArchive(inputJar);
+                final JarWriter out = new JarWriter(
+                        outputJar,
+                        CONSTANT_TIME_FOR_ZIP_ENTRIES,
+                        getJarCompression().getOrElse(JarCompression.DEFAULT))) {
             // Ensure reproducible jar output
-            inputEntries.sort(Comparator.comparing(ZipEntry::getName));
-
-            for (ZipEntry entry : inputEntries) {
-                ZipEntry n = new ZipEntry(entry.getName());
-                n.setTime(CONSTANT_TIME_FOR_ZIP_ENTRIES);
-                out.putNextEntry(n);
-                if (!entry.isDirectory()) {
-                    byte[] entryContents = Utilities.readZipEntry(inZip, entry);
-
-                    // correct source name
-                    if (entry.getName().endsWith(".class") && stripSynthetics) {
-                        final ClassNode node = Utilities.parseClassBytes(entryContents, entry.getName());
-                        // Other asm-based class cleanup can be done here
-                        if (stripSynthetics) {
-                            stripClassSynthetics(node);
-                        }
-                        entryContents = Utilities.emitClassBytes(node, 0);
-                    }
+            final List<ZipArchiveEntry> inputEntries = JarWriter.sortedEntries(inZip);
+            inputEntries.removeIf(entry -> entry.getName().contains("META-INF"));
 
-                    out.write(entryContents);
+            // Parse and re-emit the classes on all cores, but write them in the sorted order
+            inputEntries.parallelStream().map(entry -> {
+                if (entry.isDirectory() || !entry.getName().endsWith(".class") || !stripSynthetics) {
+                    return Pair.of(entry, (byte[]) null);
                 }
-            }
+                try {
+                    final byte[] entryContents = JarWriter.readEntry(inZip, entry);
+                    final ClassNode node = Utilities.parseClassBytes(entryContents, entry.getName());
+                    // Other asm-based class cleanup can be done here
+                    stripClassSynthetics(node);
+                    return Pair.of(entry, Utilities.emitClassBytes(node, 0));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }).forEachOrdered(processed -> {
+                try {
+                    if (processed.getRight() == null) {
+                        // Unmodified entries keep their compressed data
+                        out.copyRaw(inZip, processed.getLeft());
+                    } else {
+                        out.write(processed.getLeft().getName(), processed.getRight());
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
         }
     }
 
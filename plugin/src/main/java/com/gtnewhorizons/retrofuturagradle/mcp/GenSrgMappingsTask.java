@@ -4,7 +4,6 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.FileLock;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -28,8 +27,6 @@ import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.minecraftforge.srg2source.rangeapplier.MethodData;
 import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.minecraftforge.srg2source.rangeapplier.SrgContainer;
-import com.gtnewhorizons.retrofuturagradle.util.Utilities;
-import com.opencsv.CSVReader;
 
 /**
  * Generates Deobf(Mcp)-Searge(Srg)-Obf(Notch) name mappings
@@ -85,26 +82,21 @@ public abstract class GenSrgMappingsTask extends DefaultTask {
     @Internal
     public abstract Property<RfgCacheService> getCacheService();
 
+    @Internal
+    public abstract Property<MappingsService> getMappingsService();
+
     @TaskAction
     public void generateMappings() throws IOException {
-        // SRG->MCP from the MCP csv files
-        HashMap<String, String> methods = new HashMap<>(5000);
-        HashMap<String, String> fields = new HashMap<>(5000);
+        // SRG->MCP from the MCP csv files, read before taking the exclusive lock as the snapshot cache locks too
+        final MappingsService mappingsService = getMappingsService().get();
+        final MappingsService.CsvMappings csvMappings = mappingsService
+                .getCsvMappings(getMethodsCsv().get().getAsFile(), getFieldsCsv().get().getAsFile(), null, null);
+        final Map<String, String> methods = csvMappings.getMethodNames();
+        final Map<String, String> fields = csvMappings.getFieldNames();
+        final SrgContainer inSrg = mappingsService.getSrgContainer(getInputSrg().get().getAsFile());
 
         try (final FileLock ignored = getCacheService().get().lockCache(false)) {
 
-            try (CSVReader csvReader = Utilities.createCsvReader(getMethodsCsv().get().getAsFile())) {
-                for (String[] line : csvReader) {
-                    methods.put(line[0], line[1]);
-                }
-            }
-            try (CSVReader csvReader = Utilities.createCsvReader(getFieldsCsv().get().getAsFile())) {
-                for (String[] line : csvReader) {
-                    fields.put(line[0], line[1]);
-                }
-            }
-
-            SrgContainer inSrg = new SrgContainer().readSrg(getInputSrg().get().getAsFile());
             Map<String, String> excRemap = Maps.newHashMap(); // Was a bunch of commented out code in ForgeGradle
             // Write outputs
             writeOutSrgs(inSrg, methods, fields);
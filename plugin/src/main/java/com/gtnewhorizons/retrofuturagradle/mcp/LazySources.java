@@ -0,0 +1,143 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+
+/**
+ * Helpers for the lazy sources mode, where only the Minecraft classes requested through decompileMinecraftClasses are
+ * decompiled. Every top-level class is decompiled, cleaned up, patched and remapped together with its inner classes,
+ * and the resulting source is cached in the RFG cache keyed by the SRG bytecode of the class and the workspace digest.
+ */
+public final class LazySources {
+
+    /** Bump whenever the way a single class is decompiled changes */
+    public static final int FORMAT_VERSION = 1;
+
+    private LazySources() {}
+
+    /**
+     * @param className A class name using either dots or slashes, inner classes are accepted too
+     * @return The internal name of the top-level class containing it
+     */
+    public static String toTopLevelClass(String className) {
+        String internalName = StringUtils.removeEnd(className.trim(), ".java");
+        internalName = StringUtils.removeEnd(internalName, ".class").replace('.', '/');
+        final int innerStart = internalName.indexOf('$');
+        return (innerStart < 0) ? internalName : internalName.substring(0, innerStart);
+    }
+
+    /**
+     * @return The path of the decompiled source of the given top-level class
+     */
+    public static String toSourcePath(String topLevelClass) {
+        return topLevelClass + ".java";
+    }
+
+    /**
+     * @return The top-level classes listed in the given file, one per line, or an empty set if the file doesn't exist
+     */
+    public static Set<String> readClassList(File listFile) {
+        final Set<String> classes = new TreeSet<>();
+        if (!listFile.isFile()) {
+            return classes;
+        }
+        try {
+            for (String line : FileUtils.readLines(listFile, StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    classes.add(toTopLevelClass(line));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return classes;
+    }
+
+    public static void writeClassList(File listFile, Collection<String> classes) {
+        try {
+            FileUtils.writeLines(listFile, StandardCharsets.UTF_8.name(), new TreeSet<>(classes));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param srgJar          The jar of SRG-named classes the sources are decompiled from
+     * @param workspaceDigest A digest of every setting of the decompilation pipeline
+     * @param classes         The top-level classes to compute the keys of
+     * @return Map of top-level class to its cache key, classes not present in the jar are left out.
+     */
+    public static Map<String, String> computeClassKeys(File srgJar, String workspaceDigest,
+            Collection<String> classes) {
+        final Map<String, List<ZipArchiveEntry>> entries = new TreeMap<>();
+        for (String topLevelClass : classes) {
+            entries.put(topLevelClass, new ArrayList<>());
+        }
+        final Map<String, String> keys = new TreeMap<>();
+        try (final ZipFile srgZip = JarWriter.openArchive(srgJar)) {
+            for (ZipArchiveEntry entry : JarWriter.sortedEntries(srgZip)) {
+                final String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(".class")) {
+                    continue;
+                }
+                final List<ZipArchiveEntry> classEntries = entries.get(toTopLevelClass(name));
+                if (classEntries != null) {
+                    classEntries.add(entry);
+                }
+            }
+            for (Map.Entry<String, List<ZipArchiveEntry>> classEntries : entries.entrySet()) {
+                if (classEntries.getValue().isEmpty()) {
+                    continue;
+                }
+                final MessageDigest digest = DigestUtils.getSha256Digest();
+                HashUtils.addToHash(FORMAT_VERSION).andThen(HashUtils.addToHash(workspaceDigest)).accept(digest);
+                for (ZipArchiveEntry entry : classEntries.getValue()) {
+                    HashUtils.addToHash(entry.getName()).accept(digest);
+                    digest.update(JarWriter.readEntry(srgZip, entry));
+                }
+                keys.put(classEntries.getKey(), Hex.encodeHexString(digest.digest()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return keys;
+    }
+
+    /**
+     * @return If the given jar contains any class files
+     */
+    public static boolean hasClasses(File jar) {
+        if (!jar.isFile()) {
+            return false;
+        }
+        try (final ZipFile zip = JarWriter.openArchive(jar)) {
+            for (ZipArchiveEntry entry : JarWriter.sortedEntries(zip)) {
+                if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.StopExecutionException;
+
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * Runs before decompressDecompiledSources. When sharing is enabled it links the destination to the sources extracted
+ * once into the RFG cache and skips the copy, otherwise it removes such a link so the copy can't write into the cache.
+ */
+public final class LinkCachedSourcesAction implements Action<Task> {
+
+    private final Provider<RfgCacheService> cacheService;
+    private final Provider<RegularFile> sourcesJar;
+    private final File destination;
+    private final boolean shareSources;
+
+    public LinkCachedSourcesAction(Provider<RfgCacheService> cacheService, Provider<RegularFile> sourcesJar,
+            File destination, boolean shareSources) {
+        this.cacheService = cacheService;
+        this.sourcesJar = sourcesJar;
+        this.destination = destination;
+        this.shareSources = shareSources;
+    }
+
+    @Override
+    public void execute(Task task) {
+        try {
+            if (!shareSources) {
+                Utilities.unlinkDirectory(destination.toPath());
+                return;
+            }
+            final Path extracted = cacheService.get().accessExtractedSources(sourcesJar.get().getAsFile());
+            Utilities.linkDirectory(extracted, destination.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        throw new StopExecutionException();
+    }
+}
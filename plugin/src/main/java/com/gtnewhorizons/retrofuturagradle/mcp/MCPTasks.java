@@ -16,6 +16,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -45,6 +46,7 @@ import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileSystemOperations;
 import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginExtension;
@@ -55,6 +57,7 @@ import org.gradle.api.tasks.Copy;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.SourceSetContainer;
 import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.bundling.ZipEntryCompression;
 import org.gradle.api.tasks.compile.JavaCompile;
 import org.gradle.api.tasks.scala.ScalaCompile;
 import org.gradle.jvm.tasks.Jar;
@@ -103,6 +106,10 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
     private final TaskProvider<RemapSourceJarTask> taskRemapDecompiledJar;
     private final File remappedSourcesLocation;
 
+    /**
+     * The remapped sources jar, or the one of a prebuilt workspace
+     */
+    private final RegularFileProperty decompiledSourcesJar;
     private final TaskProvider<Copy> taskDecompressDecompiledSources;
     private final File decompressedSourcesLocation;
     private final Configuration patchedConfiguration;
@@ -110,6 +117,7 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
     private final TaskProvider<JavaCompile> taskBuildPatchedMc;
     private final File packagedMcLocation;
     private final TaskProvider<Jar> taskPackagePatchedMc;
+    private final TaskProvider<PublishPrebuiltWorkspaceTask> taskPublishPrebuiltWorkspace;
     private final File launcherSourcesLocation;
     private final TaskProvider<CreateLauncherFiles> taskCreateLauncherFiles;
     private final SourceSet launcherSources;
@@ -122,6 +130,8 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
     private final TaskProvider<BinaryPatchJarTask> taskInstallBinaryPatchedVersion;
     private final File srgBinaryPatchedMcLocation;
     private final TaskProvider<DeobfuscateTask> taskSrgifyBinaryPatchedVersion;
+    private final File mcpBinaryPatchedMcLocation;
+    private final TaskProvider<RemapSrgJarTask> taskRemapBinaryPatchedVersion;
     private final TaskProvider<RunMinecraftTask> taskRunObfClient;
     private final TaskProvider<RunMinecraftTask> taskRunObfServer;
     private final Configuration obfRuntimeClasspathConfiguration;
@@ -146,6 +156,7 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
         final ArchiveOperations archives = mcExt.getArchiveOperations();
         final ProjectLayout layout = mcExt.getProjectLayout();
         final Provider<RfgCacheService> rfgCacheService = RfgCacheService.lazyAccess(project.getGradle());
+        final Provider<MappingsService> mappingsService = MappingsService.lazyAccess(project.getGradle());
         // TODO: Make all users of this into providers
         final File buildDir = layout.getBuildDirectory().get().getAsFile();
 
@@ -154,6 +165,9 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
         deobfuscationATs = project.getObjects().fileCollection();
 
         decompiledMcChain = new JarChain();
+        // Jars that are kept around, the decompilation chain switches its intermediates to a cheaper setting
+        project.getTasks().withType(IJarOutputTask.class)
+                .configureEach(task -> task.getJarCompression().convention(mcExt.getFinalJarCompression()));
 
         this.patchedConfiguration = project.getConfigurations().create(PATCHED_MINECRAFT_CONFIGURATION_NAME);
         this.patchedConfiguration.extendsFrom(mcTasks.getVanillaMcConfiguration());
@@ -212,6 +226,8 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                     // Configured in afterEvaluate()
                     task.getAccessTransformerFiles().setFrom(deobfuscationATs, extractedDependencyATs);
                     task.getMinorMcVersion().set(mcExt.getMinorMcVersion());
+                    task.getMappingsService().set(mappingsService);
+                    task.usesService(mappingsService);
                 });
         decompiledMcChain.addTask(taskDeobfuscateMergedJarToSrg);
 
@@ -227,6 +243,7 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
             task.getFernflower()
                     .set(layout.file(mcExt.getMinorMcVersion().map(mcVer -> (mcVer <= 8) ? fernflowerLocation : null)));
             task.getMinorMcVersion().set(mcExt.getMinorMcVersion());
+            task.getFernflowerArguments().set(mcExt.getFernflowerArguments());
             task.getClasspath().from(patchedConfiguration.plus(mcTasks.getLwjgl2Configuration()));
             task.getJava8Launcher().set(mcExt.getToolchainLauncher(project, 8));
             task.getJava17Launcher().set(mcExt.getToolchainLauncher(project, 17));
@@ -251,6 +268,8 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                     task.getPatchesInjectDir().set(
                             mcExt.getMinorMcVersion()
                                     .flatMap(mcVer -> (mcVer <= 8) ? null : mcpDir("patches/inject/")));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
                 });
         decompiledMcChain.addTask(taskCleanupDecompSrgJar);
 
@@ -262,6 +281,8 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
             task.getOutputJar().set(patchedSourcesLocation);
             task.getMaxFuzziness().set(1);
             task.getPathComponentsToStrip().set(mcExt.getMinorMcVersion().map(mcVer -> (mcVer <= 8) ? 3 : 1));
+            task.getCacheService().set(rfgCacheService);
+            task.usesService(rfgCacheService);
         });
         decompiledMcChain.addTask(taskPatchDecompiledJar);
 
@@ -284,21 +305,22 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                 }
             }));
             task.getAddJavadocs().set(true);
+            task.getMappingsService().set(mappingsService);
+            task.usesService(mappingsService);
         });
         decompiledMcChain.addTask(taskRemapDecompiledJar);
+        decompiledMcChain.setCompression(mcExt.getIntermediateJarCompression(), mcExt.getFinalJarCompression());
         decompiledMcChain.finish();
 
+        decompiledSourcesJar = objects.fileProperty();
+        decompiledSourcesJar.set(taskRemapDecompiledJar.flatMap(IJarOutputTask::getOutputJar));
         decompressedSourcesLocation = FileUtils.getFile(buildDir, RFG_DIR, "minecraft-src");
         taskDecompressDecompiledSources = project.getTasks()
                 .register("decompressDecompiledSources", Copy.class, task -> {
                     task.setGroup(TASK_GROUP_INTERNAL);
                     task.dependsOn(taskRemapDecompiledJar);
-                    task.from(
-                            archives.zipTree(taskRemapDecompiledJar.flatMap(IJarOutputTask::getOutputJar)),
-                            subset -> { subset.include("**/*.java"); });
-                    task.from(
-                            archives.zipTree(taskRemapDecompiledJar.flatMap(IJarOutputTask::getOutputJar)),
-                            subset -> { subset.exclude("**/*.java"); });
+                    task.from(archives.zipTree(decompiledSourcesJar), subset -> { subset.include("**/*.java"); });
+                    task.from(archives.zipTree(decompiledSourcesJar), subset -> { subset.exclude("**/*.java"); });
                     task.eachFile(
                             fcd -> {
                                 fcd.setRelativePath(
@@ -351,6 +373,13 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                     task.setGroup(TASK_GROUP_INTERNAL);
                     task.dependsOn(taskDecompressDecompiledSources);
                     configureMcJavaCompilation(project, task);
+                    task.doFirst(
+                            "Restore classes from the RFG cache",
+                            new PatchedMcClassesCache.RestoreAction(rfgCacheService, decompiledSourcesJar));
+                    task.doLast(
+                            "Store classes in the RFG cache",
+                            new PatchedMcClassesCache.StoreAction(rfgCacheService, decompiledSourcesJar));
+                    task.usesService(rfgCacheService);
                 });
         project.getTasks().named(patchedMcSources.getProcessResourcesTaskName())
                 .configure(task -> task.dependsOn(taskDecompressDecompiledSources));
@@ -365,6 +394,17 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
             task.from(patchedMcSources.getOutput());
         });
 
+        taskPublishPrebuiltWorkspace = project.getTasks()
+                .register("publishPrebuiltWorkspace", PublishPrebuiltWorkspaceTask.class, task -> {
+                    task.setGroup(TASK_GROUP_USER);
+                    task.setDescription("Publishes the recompiled Minecraft and its sources as a prebuilt workspace");
+                    task.getPatchedMcJar().set(taskPackagePatchedMc.flatMap(Jar::getArchiveFile));
+                    task.getSourcesJar().set(taskRemapDecompiledJar.flatMap(IJarOutputTask::getOutputJar));
+                    task.getMcVersion().set(mcExt.getMcVersion());
+                    task.getRepositoryDirectory().set(mcExt.getPrebuiltWorkspaceRepository());
+                    // Digest configured in afterEvaluate()
+                });
+
         launcherSourcesLocation = FileUtils.getFile(buildDir, RFG_DIR, "launcher-src");
         taskCreateLauncherFiles = project.getTasks()
                 .register("createMcLauncherFiles", CreateLauncherFiles.class, task -> {
@@ -602,6 +642,10 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                 task.getMethodCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getMethodsCsv));
                 task.getExceptorCfg().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getSrgExc));
                 task.getRecompMcJar().set(taskPackagePatchedMc.flatMap(Jar::getArchiveFile));
+                task.getMappingsService().set(mappingsService);
+                task.usesService(mappingsService);
+                task.getCacheService().set(rfgCacheService);
+                task.usesService(rfgCacheService);
                 task.getReferenceClasspath().from(runtimeClasspathCfg);
                 final ConfigurableFileCollection refCp = task.getReferenceClasspath();
                 refCp.from(taskPackageMcLauncher);
@@ -723,31 +767,53 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                 .register("installBinaryPatchedVersion", BinaryPatchJarTask.class, task -> {
                     task.setGroup(TASK_GROUP_INTERNAL);
                     task.dependsOn(taskMergeVanillaSidedJars);
-                    task.setDescription("currently unused");
+                    task.setDescription("Binary patches the merged jar, used by useBinaryPatchedMinecraft");
                     task.getInputJar().set(taskMergeVanillaSidedJars.flatMap(IJarOutputTask::getOutputJar));
                     task.getOutputJar().set(binaryPatchedMcLocation);
                     task.getPatchesLzma().set(userdevFile("devbinpatches.pack.lzma"));
                     task.getExtraClassesJar().set(userdevFile("binaries.jar"));
                     task.getExtraResourcesTree().from(userdevDir("src/main/resources"));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
                 });
 
         srgBinaryPatchedMcLocation = FileUtils.getFile(buildDir, RFG_DIR, "srg_binpatchedmc.jar");
         taskSrgifyBinaryPatchedVersion = project.getTasks()
                 .register("srgifyBinpatchedJar", DeobfuscateTask.class, task -> {
                     task.setGroup(TASK_GROUP_INTERNAL);
-                    task.dependsOn(taskInstallBinaryPatchedVersion, taskGenerateForgeSrgMappings);
-                    task.setDescription("currently unused");
+                    task.dependsOn(
+                            taskInstallBinaryPatchedVersion,
+                            taskGenerateForgeSrgMappings,
+                            taskExtractDependencyATs);
+                    task.setDescription("Deobfuscates the binary patched jar to SRG names");
                     task.getSrgFile().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getNotchToSrg));
-                    task.getExceptorJson().set(userdevFile("conf/exceptor.json"));
+                    task.getExceptorJson().set(
+                            mcExt.getMinorMcVersion().flatMap(
+                                    ver -> (ver <= 8) ? userdevFile("conf/exceptor.json") : mcpFile("exceptor.json")));
                     task.getExceptorCfg().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getSrgExc));
                     task.getInputJar().set(taskInstallBinaryPatchedVersion.flatMap(IJarOutputTask::getOutputJar));
                     task.getOutputJar().set(srgBinaryPatchedMcLocation);
-                    task.getFieldCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getFieldsCsv));
-                    task.getMethodCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getMethodsCsv));
+                    // No fields or methods CSV - passing them in causes ATs to not successfully apply, remapped later
                     task.getIsApplyingMarkers().set(true);
                     // Configured in afterEvaluate()
                     task.getAccessTransformerFiles().setFrom(deobfuscationATs, extractedDependencyATs);
                     task.getMinorMcVersion().set(mcExt.getMinorMcVersion());
+                    task.getMappingsService().set(mappingsService);
+                    task.usesService(mappingsService);
+                });
+
+        mcpBinaryPatchedMcLocation = FileUtils.getFile(buildDir, RFG_DIR, "binpatched_mcp_minecraft.jar");
+        taskRemapBinaryPatchedVersion = project.getTasks()
+                .register("remapBinpatchedJar", RemapSrgJarTask.class, task -> {
+                    task.setGroup(TASK_GROUP_INTERNAL);
+                    task.dependsOn(taskSrgifyBinaryPatchedVersion);
+                    task.setDescription("Remaps the SRG binary patched jar to MCP names");
+                    task.getInputJar().set(taskSrgifyBinaryPatchedVersion.flatMap(IJarOutputTask::getOutputJar));
+                    task.getOutputJar().set(mcpBinaryPatchedMcLocation);
+                    task.getFieldCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getFieldsCsv));
+                    task.getMethodCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getMethodsCsv));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
                 });
 
         obfRuntimeClasspathConfiguration = project.getConfigurations().create("obfuscatedRuntimeClasspath");
@@ -851,6 +917,24 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
         // At afterEvaluate minecraft version should be already set and stable
         final int mcMinor = mcExt.getMinorMcVersion().get();
 
+        // Gradle's jar tasks take a plain value instead of a provider
+        final ZipEntryCompression jarCompression = mcExt.getFinalJarCompression().get().toZipEntryCompression();
+        taskPackagePatchedMc.configure(t -> t.setEntryCompression(jarCompression));
+        taskPackageMcLauncher.configure(t -> t.setEntryCompression(jarCompression));
+
+        final Provider<RfgCacheService> rfgCacheService = RfgCacheService.lazyAccess(project.getGradle());
+        final boolean shareExtractedSources = mcExt.getShareExtractedSources().get();
+        taskDecompressDecompiledSources.configure(task -> {
+            task.doFirst(
+                    "Link the sources extracted into the RFG cache",
+                    new LinkCachedSourcesAction(
+                            rfgCacheService,
+                            decompiledSourcesJar,
+                            decompressedSourcesLocation,
+                            shareExtractedSources));
+            task.usesService(rfgCacheService);
+        });
+
         if (mcExt.getSkipSlowTasks().get()) {
             taskDeobfuscateMergedJarToSrg
                     .configure(t -> t.onlyIf("skipping slow task", p -> !t.getOutputJar().get().getAsFile().exists()));
@@ -1023,6 +1107,276 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
                 });
             }
         }
+
+        final boolean lazySources = mcExt.getUseLazySources().get();
+        if (mcExt.getUseBinaryPatchedMinecraft().get() || lazySources) {
+            configureBinaryPatchedMinecraft(project, lazySources);
+            if (lazySources) {
+                configureLazySources(project);
+            }
+        } else {
+            configurePrebuiltWorkspace(project);
+        }
+    }
+
+    private void configureBinaryPatchedMinecraft(Project project, boolean lazySources) {
+        if (!mcExt.getUsesForge().get()) {
+            throw new IllegalArgumentException(
+                    "useBinaryPatchedMinecraft requires usesForge, the binary patches come from the Forge userdev");
+        }
+        if (mcExt.getInjectMissingGenerics().get()) {
+            // The generics are injected into the decompiled sources, the binary patched classes would not have them
+            throw new IllegalArgumentException(
+                    "useBinaryPatchedMinecraft can't be combined with injectMissingGenerics, the compiled classes would"
+                            + " have different generic signatures than the decompiled sources");
+        }
+        project.getLogger().lifecycle("Using the binary patched Minecraft, no sources will be decompiled up front");
+
+        // Nothing from the decompilation chain is needed, the merged jar is binary patched instead
+        final RegularFileProperty sourcesJar = decompiledSourcesJar;
+        taskDecompressDecompiledSources.configure(task -> {
+            task.setDependsOn(Collections.emptyList());
+            if (lazySources) {
+                task.onlyIf("some classes were decompiled lazily", t -> sourcesJar.get().getAsFile().isFile());
+            } else {
+                task.onlyIf("not using the binary patched Minecraft", t -> false);
+            }
+        });
+        // The merged jar is deleted once a previous full decompilation finishes its chain, so it has to run regardless
+        taskMergeVanillaSidedJars.configure(task -> task.setOnlyIf("needed for binary patching", t -> true));
+        for (TaskProvider<? extends IJarOutputTask> chainTask : Arrays.asList(
+                taskDeobfuscateMergedJarToSrg,
+                taskDecompileSrgJar,
+                taskCleanupDecompSrgJar,
+                taskPatchDecompiledJar,
+                taskRemapDecompiledJar)) {
+            chainTask.configure(task -> task.onlyIf("not using the binary patched Minecraft", t -> false));
+        }
+        taskPublishPrebuiltWorkspace
+                .configure(task -> task.onlyIf("not using the binary patched Minecraft", t -> false));
+
+        final Provider<RegularFile> mcpJar = taskRemapBinaryPatchedVersion.flatMap(IJarOutputTask::getOutputJar);
+        final File resourcesLocation = new File(packagedMcLocation.getParentFile(), "binpatched-patchedmc-resources");
+        final TaskProvider<Copy> taskExtractResources = project.getTasks()
+                .register("extractBinpatchedResources", Copy.class, task -> {
+                    task.setGroup(TASK_GROUP_INTERNAL);
+                    task.dependsOn(taskRemapBinaryPatchedVersion);
+                    task.from(
+                            mcpJar.map(jar -> mcExt.getArchiveOperations().zipTree(jar)),
+                            subset -> { subset.exclude("**/*.class", "META-INF/**"); });
+                    task.into(resourcesLocation);
+                });
+        patchedMcSources.getResources().setSrcDirs(
+                mcExt.getObjectFactory().fileCollection().from(resourcesLocation).builtBy(taskExtractResources));
+        replacePatchedMcClasses(project, "extractBinpatchedClasses", mcpJar, "binpatched-patchedmc-classes")
+                .configure(task -> task.dependsOn(taskRemapBinaryPatchedVersion));
+    }
+
+    private void configureLazySources(Project project) {
+        final Provider<RfgCacheService> rfgCacheService = RfgCacheService.lazyAccess(project.getGradle());
+        final Provider<MappingsService> mappingsService = MappingsService.lazyAccess(project.getGradle());
+        // The bytecode of every class is part of its key, which covers the dependency ATs missing from the digest
+        final Provider<String> workspaceDigest = computeWorkspaceDigest();
+        final Provider<RegularFile> srgJar = taskSrgifyBinaryPatchedVersion.flatMap(IJarOutputTask::getOutputJar);
+        final File lazyDir = new File(packagedMcLocation.getParentFile(), "lazy-sources");
+        final File classListFile = new File(lazyDir, "classes.txt");
+
+        final TaskProvider<SelectLazyClassesTask> taskSelectClasses = project.getTasks()
+                .register("decompileMinecraftClasses", SelectLazyClassesTask.class, task -> {
+                    task.setGroup(TASK_GROUP_USER);
+                    task.setDescription("Decompiles the Minecraft classes given with --classes into the sources");
+                    task.dependsOn(taskSrgifyBinaryPatchedVersion);
+                    task.getSrgJar().set(srgJar);
+                    task.getClassListFile().set(classListFile);
+                    task.getWorkspaceDigest().set(workspaceDigest);
+                    task.getOutputJar().set(new File(lazyDir, "selected_srg_minecraft.jar"));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
+                });
+        final Provider<RegularFile> selectedJar = taskSelectClasses.flatMap(SelectLazyClassesTask::getOutputJar);
+
+        // Same settings as the full decompilation chain, with the whole jar as a library for the missing classes
+        final TaskProvider<DecompileTask> taskDecompileClasses = project.getTasks()
+                .register("decompileLazyClasses", DecompileTask.class, task -> {
+                    task.setGroup(TASK_GROUP_INTERNAL);
+                    task.dependsOn(taskSelectClasses, taskDownloadFernflower);
+                    task.getInputJar().set(selectedJar);
+                    task.getOutputJar().set(new File(lazyDir, "srg_minecraft-sources-rawff.jar"));
+                    task.getCacheDir().set(taskDecompileSrgJar.flatMap(DecompileTask::getCacheDir));
+                    task.getFernflower().set(taskDecompileSrgJar.flatMap(DecompileTask::getFernflower));
+                    task.getMinorMcVersion().set(mcExt.getMinorMcVersion());
+                    task.getFernflowerArguments().set(mcExt.getFernflowerArguments().zip(srgJar, (args, jar) -> {
+                        final List<String> withLibrary = new ArrayList<>(args);
+                        withLibrary.add("-e=" + jar.getAsFile().getAbsolutePath());
+                        return withLibrary;
+                    }));
+                    task.getClasspath().from(taskDecompileSrgJar.map(DecompileTask::getClasspath), srgJar);
+                    task.getJava8Launcher().set(taskDecompileSrgJar.flatMap(DecompileTask::getJava8Launcher));
+                    task.getJava17Launcher().set(taskDecompileSrgJar.flatMap(DecompileTask::getJava17Launcher));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
+                });
+        final TaskProvider<CleanupDecompiledJarTask> taskCleanupClasses = project.getTasks()
+                .register("cleanupLazyClasses", CleanupDecompiledJarTask.class, task -> {
+                    task.setGroup(TASK_GROUP_INTERNAL);
+                    task.dependsOn(taskDecompileClasses);
+                    task.getInputJar().set(taskDecompileClasses.flatMap(IJarOutputTask::getOutputJar));
+                    task.getOutputJar().set(new File(lazyDir, "srg_minecraft-sources.jar"));
+                    task.getPatches().set(taskCleanupDecompSrgJar.flatMap(CleanupDecompiledJarTask::getPatches));
+                    task.getAstyleConfig()
+                            .set(taskCleanupDecompSrgJar.flatMap(CleanupDecompiledJarTask::getAstyleConfig));
+                    task.getMinorMcVersion().set(mcExt.getMinorMcVersion());
+                    task.getPatchesInjectDir()
+                            .set(taskCleanupDecompSrgJar.flatMap(CleanupDecompiledJarTask::getPatchesInjectDir));
+                    task.getSkipMissingTargets().set(true);
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
+                });
+        // The Forge patches are already part of the binary patched classes
+        final TaskProvider<RemapSourceJarTask> taskRemapClasses = project.getTasks()
+                .register("remapLazyClasses", RemapSourceJarTask.class, task -> {
+                    task.setGroup(TASK_GROUP_INTERNAL);
+                    task.dependsOn(taskCleanupClasses);
+                    task.getBinaryJar().set(srgJar);
+                    task.getInputJar().set(taskCleanupClasses.flatMap(IJarOutputTask::getOutputJar));
+                    task.getOutputJar().set(new File(lazyDir, "mcp_minecraft-sources.jar"));
+                    task.getFieldCsv().set(taskRemapDecompiledJar.flatMap(RemapSourceJarTask::getFieldCsv));
+                    task.getMethodCsv().set(taskRemapDecompiledJar.flatMap(RemapSourceJarTask::getMethodCsv));
+                    task.getParamCsv().set(taskRemapDecompiledJar.flatMap(RemapSourceJarTask::getParamCsv));
+                    task.getExtraParamsCsvs().from(mcExt.getExtraParamsCsvs());
+                    task.getGenericFieldsCsvName()
+                            .set(taskRemapDecompiledJar.flatMap(RemapSourceJarTask::getGenericFieldsCsvName));
+                    task.getAddJavadocs().set(true);
+                    task.getMappingsService().set(mappingsService);
+                    task.usesService(mappingsService);
+                });
+        for (TaskProvider<? extends IJarOutputTask> lazyTask : Arrays
+                .asList(taskDecompileClasses, taskCleanupClasses, taskRemapClasses)) {
+            lazyTask.configure(
+                    task -> task.onlyIf(
+                            "some classes need decompiling",
+                            t -> LazySources.hasClasses(selectedJar.get().getAsFile())));
+        }
+
+        final TaskProvider<CollectLazySourcesTask> taskCollectSources = project.getTasks()
+                .register("collectLazySources", CollectLazySourcesTask.class, task -> {
+                    task.setGroup(TASK_GROUP_INTERNAL);
+                    task.dependsOn(taskSelectClasses, taskRemapClasses);
+                    task.getSrgJar().set(srgJar);
+                    task.getSelectedJar().set(selectedJar);
+                    task.getRemappedJar().set(taskRemapClasses.flatMap(IJarOutputTask::getOutputJar));
+                    task.getClassListFile().set(classListFile);
+                    task.getWorkspaceDigest().set(workspaceDigest);
+                    task.getOutputJar().set(new File(lazyDir, "lazy_mcp_minecraft-sources.jar"));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
+                    task.finalizedBy(taskDecompressDecompiledSources);
+                });
+        taskSelectClasses.configure(task -> task.finalizedBy(taskCollectSources));
+        decompiledSourcesJar.set(taskCollectSources.flatMap(CollectLazySourcesTask::getOutputJar));
+    }
+
+    private void configurePrebuiltWorkspace(Project project) {
+        if (mcExt.getUseDependencyAccessTransformers().get()) {
+            // Dependency ATs are only known after scanning the classpath, so they can't be part of the digest
+            taskPublishPrebuiltWorkspace.configure(
+                    task -> task.onlyIf("useDependencyAccessTransformers not set in minecraft{}", t -> false));
+            if (mcExt.getUsePrebuiltWorkspace().get()) {
+                project.getLogger()
+                        .warn("Prebuilt workspaces can't be used together with useDependencyAccessTransformers");
+            }
+            return;
+        }
+
+        final Provider<String> workspaceDigest = computeWorkspaceDigest();
+        taskPublishPrebuiltWorkspace.configure(task -> task.getWorkspaceDigest().set(workspaceDigest));
+
+        if (!mcExt.getUsePrebuiltWorkspace().get()) {
+            return;
+        }
+        if (mcExt.getPrebuiltWorkspaceRepository().isPresent()) {
+            final File repositoryDir = mcExt.getPrebuiltWorkspaceRepository().get().getAsFile();
+            project.getRepositories().maven(repo -> {
+                repo.setName("rfgPrebuiltWorkspaces");
+                repo.setUrl(repositoryDir);
+                repo.content(content -> content.includeGroup(PrebuiltWorkspace.GROUP));
+            });
+        }
+        final String mcVersion = mcExt.getMcVersion().get();
+        final String digest = workspaceDigest.get();
+        final PrebuiltWorkspace workspace = PrebuiltWorkspace
+                .resolve(project.getConfigurations(), project.getDependencies(), mcVersion, digest);
+        if (workspace == null) {
+            project.getLogger().lifecycle("No prebuilt workspace {} found, decompiling Minecraft", digest);
+            return;
+        }
+        project.getLogger().lifecycle("Using the prebuilt workspace {}", digest);
+
+        // Unpack the prebuilt sources instead of the remapped ones, without running any of the decompilation chain
+        decompiledSourcesJar.set(workspace.getSourcesJar());
+        taskDecompressDecompiledSources.configure(task -> task.setDependsOn(Collections.emptyList()));
+        for (TaskProvider<? extends IJarOutputTask> chainTask : Arrays.asList(
+                taskMergeVanillaSidedJars,
+                taskDeobfuscateMergedJarToSrg,
+                taskDecompileSrgJar,
+                taskCleanupDecompSrgJar,
+                taskPatchDecompiledJar,
+                taskRemapDecompiledJar)) {
+            chainTask.configure(task -> task.onlyIf("not using a prebuilt workspace", t -> false));
+        }
+        taskPublishPrebuiltWorkspace.configure(task -> task.onlyIf("not using a prebuilt workspace", t -> false));
+
+        replacePatchedMcClasses(
+                project,
+                "extractPrebuiltPatchedMc",
+                mcExt.getProviderFactory().provider(workspace::getPatchedMcJar),
+                "prebuilt-patchedmc-classes");
+    }
+
+    /**
+     * @return A digest of every setting of the decompilation pipeline and of the patchedMc compilation except for the
+     *         dependency access transformers. The java compatibility version is left out because patchedMc is always
+     *         compiled for Java 8 (see {@link #configureMcJavaCompilation}) with the jvmLanguageVersion toolchain. The
+     *         LWJGL 3 and main LWJGL versions are left out because they are only on the classpath of the mod sources.
+     */
+    private Provider<String> computeWorkspaceDigest() {
+        final Map<String, String> settings = new TreeMap<>();
+        settings.put("mcVersion", mcExt.getMcVersion().get());
+        settings.put("forgeVersion", mcExt.getForgeVersion().get());
+        settings.put("usesFml", mcExt.getUsesFml().get().toString());
+        settings.put("usesForge", mcExt.getUsesForge().get().toString());
+        settings.put("mcpMappingChannel", mcExt.getMcpMappingChannel().get());
+        settings.put("mcpMappingVersion", mcExt.getMcpMappingVersion().get());
+        settings.put("useForgeEmbeddedMappings", mcExt.getUseForgeEmbeddedMappings().get().toString());
+        settings.put("injectMissingGenerics", mcExt.getInjectMissingGenerics().get().toString());
+        settings.put("fernflowerArguments", String.join(" ", mcExt.getFernflowerArguments().get()));
+        settings.put("jvmLanguageVersion", mcExt.getJvmLanguageVersion().get().toString());
+        settings.put("lwjgl2Version", mcExt.getLwjgl2Version().get());
+        final FileCollection digestedFiles = mcExt.getObjectFactory().fileCollection()
+                .from(deobfuscationATs, mcExt.getExtraParamsCsvs());
+        return mcExt.getProviderFactory().provider(() -> PrebuiltWorkspace.computeDigest(settings, digestedFiles));
+    }
+
+    /**
+     * Makes the patchedMc source set output the classes of the given jar instead of compiling the decompiled sources.
+     */
+    private TaskProvider<Copy> replacePatchedMcClasses(Project project, String taskName, Provider<?> jar,
+            String dirName) {
+        // With no sources javac cleans up the outputs of earlier compilations, so the classes go to their own directory
+        final File classesLocation = new File(packagedMcLocation.getParentFile(), dirName);
+        final TaskProvider<Copy> taskExtractClasses = project.getTasks().register(taskName, Copy.class, task -> {
+            task.setGroup(TASK_GROUP_INTERNAL);
+            task.from(
+                    jar.map(file -> mcExt.getArchiveOperations().zipTree(file)),
+                    subset -> { subset.include("**/*.class"); });
+            task.into(classesLocation);
+        });
+        taskBuildPatchedMc.configure(task -> {
+            task.setSource(mcExt.getObjectFactory().fileCollection());
+            task.dependsOn(taskExtractClasses);
+        });
+        patchedMcSources.getOutput().dir(ImmutableMap.of("builtBy", taskExtractClasses), classesLocation);
+        return taskExtractClasses;
     }
 
     public TaskProvider<GenSrgMappingsTask> getTaskGenerateForgeSrgMappings() {
@@ -1105,6 +1459,10 @@ public class MCPTasks extends SharedMCPTasks<MinecraftExtension> {
         return taskSrgifyBinaryPatchedVersion;
     }
 
+    public TaskProvider<RemapSrgJarTask> getTaskRemapBinaryPatchedVersion() {
+        return taskRemapBinaryPatchedVersion;
+    }
+
     public TaskProvider<RunMinecraftTask> getTaskRunObfClient() {
         return taskRunObfClient;
     }
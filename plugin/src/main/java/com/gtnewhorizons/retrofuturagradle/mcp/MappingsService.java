@@ -0,0 +1,340 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+
+import net.fabricmc.mappingio.format.srg.SrgFileReader;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.minecraftforge.srg2source.rangeapplier.SrgContainer;
+import com.gtnewhorizons.retrofuturagradle.util.ClassHierarchyIndex;
+import com.gtnewhorizons.retrofuturagradle.util.CompiledAccessTransformers;
+import com.gtnewhorizons.retrofuturagradle.util.MappingSnapshot;
+import com.gtnewhorizons.retrofuturagradle.util.SrgMappingTable;
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * A shared build service that keeps the parsed SRG, EXC, AT and MCP CSV mapping files and the class hierarchies of jars
+ * in memory, so that the tasks of a build don't each parse the same files again. The parsed data lives as long as the
+ * Gradle daemon and is keyed by the SHA256 of the file contents, so edited or replaced files are parsed again.
+ */
+public abstract class MappingsService implements BuildService<MappingsService.Parameters> {
+
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * Optional, used to store the parsed CSVs as memory-mapped snapshots that survive the daemon.
+         */
+        Property<RfgCacheService> getCacheService();
+    }
+
+    /**
+     * The name you can use in {@link org.gradle.api.services.ServiceReference} to obtain an instance of this service.
+     */
+    public static final String NAME = "rfgMappingsService";
+
+    private static final Logger LOGGER = Logging.getLogger("RFG Mappings");
+
+    // Soft values, so the daemon can reclaim the parsed mappings when it runs low on memory
+    private static final Cache<String, Object> PARSED_FILES = CacheBuilder.newBuilder().softValues().build();
+    private static final Map<File, FileDigest> FILE_DIGESTS = new ConcurrentHashMap<>();
+
+    private static final class FileDigest {
+
+        final long length;
+        final long lastModified;
+        final String digest;
+
+        FileDigest(long length, long lastModified, String digest) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * The method, field and param names from a set of MCP CSV files, immutable and safe to share between tasks.
+     */
+    public static final class CsvMappings {
+
+        private final Supplier<Map<String, Utilities.Mapping>> methodMappings;
+        private final Supplier<Map<String, Utilities.Mapping>> fieldMappings;
+        private final Supplier<Map<String, String>> methodNames;
+        private final Supplier<Map<String, String>> fieldNames;
+        private final Supplier<Map<String, String>> paramNames;
+        private final Supplier<Map<String, String>> memberNames;
+        private final Supplier<SrgMappingTable> mappingTable;
+
+        private CsvMappings(Supplier<Map<String, Utilities.Mapping>> methodMappings,
+                Supplier<Map<String, Utilities.Mapping>> fieldMappings, Supplier<Map<String, String>> methodNames,
+                Supplier<Map<String, String>> fieldNames, Supplier<Map<String, String>> paramNames) {
+            this.methodMappings = methodMappings;
+            this.fieldMappings = fieldMappings;
+            this.methodNames = methodNames;
+            this.fieldNames = fieldNames;
+            this.paramNames = paramNames;
+            memberNames = Suppliers.memoize(() -> {
+                final Map<String, String> names = new HashMap<>(getFieldNames());
+                names.putAll(getMethodNames());
+                return Collections.unmodifiableMap(names);
+            });
+            mappingTable = Suppliers.memoize(() -> {
+                final Map<String, String> combined = new HashMap<>(getMemberNames());
+                combined.putAll(getParamNames());
+                return SrgMappingTable.build(combined);
+            });
+        }
+
+        /**
+         * @return The mappings copied from the given parsed CSVs
+         */
+        static CsvMappings of(Utilities.MappingsSet parsed) {
+            final Map<String, Utilities.Mapping> methods = Collections
+                    .unmodifiableMap(new HashMap<>(parsed.methodMappings));
+            final Map<String, Utilities.Mapping> fields = Collections
+                    .unmodifiableMap(new HashMap<>(parsed.fieldMappings));
+            return new CsvMappings(
+                    Suppliers.ofInstance(methods),
+                    Suppliers.ofInstance(fields),
+                    Suppliers.memoize(() -> namesOf(methods)),
+                    Suppliers.memoize(() -> namesOf(fields)),
+                    Suppliers.ofInstance(Collections.unmodifiableMap(new HashMap<>(parsed.paramMappings))));
+        }
+
+        /**
+         * @return The mappings of the given snapshot, each section is decoded the first time it is requested and the
+         *         javadocs only for {@link #toMappingsSet}
+         */
+        static CsvMappings of(MappingSnapshot snapshot) {
+            return new CsvMappings(
+                    Suppliers.memoize(() -> Collections.unmodifiableMap(snapshot.getMethodMappings())),
+                    Suppliers.memoize(() -> Collections.unmodifiableMap(snapshot.getFieldMappings())),
+                    Suppliers.memoize(() -> Collections.unmodifiableMap(snapshot.getMethodNames())),
+                    Suppliers.memoize(() -> Collections.unmodifiableMap(snapshot.getFieldNames())),
+                    Suppliers.memoize(() -> Collections.unmodifiableMap(snapshot.getParamNames())));
+        }
+
+        private static Map<String, String> namesOf(Map<String, Utilities.Mapping> mappings) {
+            final Map<String, String> names = new HashMap<>(mappings.size() * 2);
+            mappings.forEach((srg, mapping) -> names.put(srg, mapping.name));
+            return Collections.unmodifiableMap(names);
+        }
+
+        /**
+         * @return SRG->MCP method names
+         */
+        public Map<String, String> getMethodNames() {
+            return methodNames.get();
+        }
+
+        /**
+         * @return SRG->MCP field names
+         */
+        public Map<String, String> getFieldNames() {
+            return fieldNames.get();
+        }
+
+        /**
+         * @return SRG->MCP field and method names
+         */
+        public Map<String, String> getMemberNames() {
+            return memberNames.get();
+        }
+
+        /**
+         * @return SRG->MCP parameter names
+         */
+        public Map<String, String> getParamNames() {
+            return paramNames.get();
+        }
+
+        /**
+         * @return A lookup table of the method, field and param names
+         */
+        public SrgMappingTable getMappingTable() {
+            return mappingTable.get();
+        }
+
+        /**
+         * @param genericsFilename The bundled generics to add, see {@link Utilities#loadGenericMappings}
+         * @return A new mutable mappings set with a copy of these mappings
+         */
+        public Utilities.MappingsSet toMappingsSet(@Nullable String genericsFilename) {
+            final Utilities.MappingsSet mappings = new Utilities.MappingsSet();
+            mappings.methodMappings.putAll(methodMappings.get());
+            mappings.fieldMappings.putAll(fieldMappings.get());
+            mappings.paramMappings.putAll(getParamNames());
+            Utilities.loadGenericMappings(mappings, genericsFilename);
+            return mappings;
+        }
+    }
+
+    public static void register(Gradle gradle) {
+        gradle.getSharedServices().registerIfAbsent(
+                NAME,
+                MappingsService.class,
+                spec -> { spec.getParameters().getCacheService().set(RfgCacheService.lazyAccess(gradle)); });
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Provider<MappingsService> lazyAccess(Gradle gradle) {
+        return (Provider<MappingsService>) gradle.getSharedServices().getRegistrations().named(NAME).get()
+                .getService();
+    }
+
+    @SuppressWarnings("unused") // used by Gradle
+    @Inject
+    public MappingsService() {}
+
+    /**
+     * @return The parsed method, field and param names from the given MCP CSVs.
+     */
+    public CsvMappings getCsvMappings(final File methodsCsv, final File fieldsCsv, @Nullable final File paramsCsv,
+            @Nullable final Collection<File> extraParamsCsvs) {
+        final StringBuilder key = new StringBuilder("csv");
+        key.append(':').append(digest(methodsCsv));
+        key.append(':').append(digest(fieldsCsv));
+        key.append(':').append(paramsCsv == null ? "-" : digest(paramsCsv));
+        if (extraParamsCsvs != null) {
+            for (File extraParamsCsv : extraParamsCsvs) {
+                key.append(':').append(digest(extraParamsCsv));
+            }
+        }
+        return cached(key.toString(), () -> {
+            LOGGER.info("Loading the mappings from {} and {}", methodsCsv, fieldsCsv);
+            final RfgCacheService cacheService = getParameters().getCacheService().getOrNull();
+            if (cacheService != null) {
+                return CsvMappings
+                        .of(cacheService.accessMappingSnapshot(methodsCsv, fieldsCsv, paramsCsv, extraParamsCsvs));
+            }
+            return CsvMappings.of(Utilities.loadMappingCsvs(methodsCsv, fieldsCsv, paramsCsv, extraParamsCsvs, null));
+        });
+    }
+
+    /**
+     * @return The parsed notch->srg mappings from the given SRG file, shared between tasks so it must not be modified.
+     */
+    public SrgContainer getSrgContainer(final File srgFile) {
+        return cached("srg:" + digest(srgFile), () -> {
+            LOGGER.info("Loading the mappings from {}", srgFile);
+            return new SrgContainer().readSrg(srgFile);
+        });
+    }
+
+    /**
+     * @return The given SRG file as an "official"->"srg" mapping tree, shared between tasks so it must not be
+     *         modified.
+     */
+    public MemoryMappingTree getSrgTree(final File srgFile) {
+        return cached("srgtree:" + digest(srgFile), () -> {
+            LOGGER.info("Loading the mapping tree from {}", srgFile);
+            final MemoryMappingTree tree = new MemoryMappingTree();
+            try (final Reader reader = Files.newBufferedReader(srgFile.toPath())) {
+                SrgFileReader.read(reader, "official", "srg", tree);
+            }
+            return tree;
+        });
+    }
+
+    /**
+     * @return The class=marker entries of the given EXC file, used to match up renamed anonymous classes.
+     */
+    public Map<String, String> getExcClassMarkers(final File excFile) {
+        return cached("exc:" + digest(excFile), () -> {
+            LOGGER.info("Loading the exceptor config from {}", excFile);
+            final Map<String, String> markers = new HashMap<>();
+            for (String line : Files.readAllLines(excFile.toPath(), Charset.defaultCharset())) {
+                if (line.contains(".") || !line.contains("=") || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] parts = line.split("=");
+                markers.put(parts[0], parts[1]);
+            }
+            return Collections.unmodifiableMap(markers);
+        });
+    }
+
+    /**
+     * @return The parsed entries of the given access transformer files, in order.
+     */
+    public CompiledAccessTransformers getAccessTransformers(final Collection<File> atFiles) {
+        final StringBuilder key = new StringBuilder("at");
+        for (File atFile : atFiles) {
+            key.append(':').append(digest(atFile));
+        }
+        return cached(key.toString(), () -> CompiledAccessTransformers.parse(atFiles));
+    }
+
+    /**
+     * @return The class hierarchy of the given jar or class directory, shared between tasks. Jars are indexed once and
+     *         kept in the RFG cache, directories are indexed on every call as their contents can change at any time.
+     */
+    public ClassHierarchyIndex getClassHierarchyIndex(final File jarOrDir) {
+        if (!jarOrDir.isFile()) {
+            try {
+                return ClassHierarchyIndex.build(jarOrDir);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return cached("hierarchy:" + digest(jarOrDir), () -> {
+            LOGGER.info("Indexing the class hierarchy of {}", jarOrDir);
+            final RfgCacheService cacheService = getParameters().getCacheService().getOrNull();
+            return (cacheService != null) ? cacheService.accessClassHierarchyIndex(jarOrDir)
+                    : ClassHierarchyIndex.build(jarOrDir);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cached(String key, Callable<T> loader) {
+        try {
+            return (T) PARSED_FILES.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static String digest(File file) {
+        final File absoluteFile = file.getAbsoluteFile();
+        final long length = absoluteFile.length();
+        final long lastModified = absoluteFile.lastModified();
+        final FileDigest known = FILE_DIGESTS.get(absoluteFile);
+        if (known != null && known.length == length && known.lastModified == lastModified) {
+            return known.digest;
+        }
+        try {
+            final String digest = new DigestUtils(DigestUtils.getSha256Digest()).digestAsHex(absoluteFile);
+            FILE_DIGESTS.put(absoluteFile, new FileDigest(length, lastModified, digest));
+            return digest;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not hash file " + absoluteFile, e);
+        }
+    }
+}
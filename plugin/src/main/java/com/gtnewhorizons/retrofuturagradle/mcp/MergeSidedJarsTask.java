@@ -1,31 +1,28 @@
 package com.gtnewhorizons.retrofuturagradle.mcp;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.collections4.MultiValuedMap;
-import org.apache.commons.collections4.iterators.EnumerationIterator;
-import org.apache.commons.collections4.iterators.IteratorIterable;
 import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang3.tuple.Pair;
@@ -51,6 +48,8 @@ import com.google.common.collect.ImmutableList;
 import com.gtnewhorizons.retrofuturagradle.util.Distribution;
 import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
 import com.gtnewhorizons.retrofuturagradle.util.IJarOutputTask;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
 import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
 
@@ -104,22 +103,22 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
         final MergeConfig config = new MergeConfig(
                 getMergeConfigFile().getAsFile().getOrNull(),
                 getMergeConfig().getOrElse(Collections.emptyList()));
-        try (final ZipFile clientJar = new ZipFile(getClientJar().get().getAsFile());
-                final ZipFile serverJar = new ZipFile(getServerJar().get().getAsFile());
-                final FileOutputStream outFOS = new FileOutputStream(getOutputJar().get().getAsFile());
-                final BufferedOutputStream outBOS = new BufferedOutputStream(outFOS);
-                final ZipOutputStream outJar = new ZipOutputStream(outBOS)) {
+        try (final ZipFile clientJar = JarWriter.openArchive(getClientJar().get().getAsFile());
+                final ZipFile serverJar = JarWriter.openArchive(getServerJar().get().getAsFile());
+                final JarWriter outJar = new JarWriter(
+                        getOutputJar().get().getAsFile(),
+                        getJarCompression().getOrElse(JarCompression.DEFAULT))) {
             final Set<String> resources = new HashSet<>();
-            final Map<String, ZipEntry> clientClasses = new HashMap<>();
-            final Map<String, ZipEntry> serverClasses = new HashMap<>();
+            final Map<String, ZipArchiveEntry> clientClasses = new HashMap<>();
+            final Map<String, ZipArchiveEntry> serverClasses = new HashMap<>();
             final Set<String> processedClasses = new HashSet<>();
 
             // Find classes and merge resources
-            for (Pair<Map<String, ZipEntry>, ZipFile> pair : ImmutableList
+            for (Pair<Map<String, ZipArchiveEntry>, ZipFile> pair : ImmutableList
                     .of(Pair.of(clientClasses, clientJar), Pair.of(serverClasses, serverJar))) {
                 final ZipFile jar = pair.getRight();
-                final Map<String, ZipEntry> classes = pair.getLeft();
-                for (ZipEntry entry : new IteratorIterable<>(new EnumerationIterator<>(jar.entries()))) {
+                final Map<String, ZipArchiveEntry> classes = pair.getLeft();
+                for (ZipArchiveEntry entry : Collections.list(jar.getEntries())) {
                     final String entryName = entry.getName();
                     if (entry.isDirectory() || "META-INF/MANIFEST.MF".equals(entryName)
                             || config.dontProcess.stream().anyMatch(entryName::startsWith)) {
@@ -128,9 +127,8 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
                     final boolean isResource = !entryName.endsWith(".class") || entryName.startsWith(".");
                     if (isResource) {
                         if (!resources.contains(entryName)) {
-                            final ZipEntry newEntry = new ZipEntry(entryName);
-                            outJar.putNextEntry(newEntry);
-                            outJar.write(Utilities.readZipEntry(jar, entry));
+                            // Resources are never modified, move them over still compressed
+                            outJar.copyRaw(jar, entry, entryName);
                             resources.add(entryName);
                         }
                     } else {
@@ -139,37 +137,44 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
                 }
             }
 
-            // Process Client classes
-            for (Map.Entry<String, ZipEntry> entry : clientClasses.entrySet()) {
+            // Client classes, merged with their server counterpart if there is one
+            final List<ClassPair> classPairs = new ArrayList<>(clientClasses.size() + serverClasses.size());
+            for (Map.Entry<String, ZipArchiveEntry> entry : clientClasses.entrySet()) {
                 final String className = entry.getKey(); // e.g. java/lang/Math
-                final ZipEntry clientEntry = entry.getValue();
-                final ZipEntry serverEntry = serverClasses.get(className);
-                if (serverEntry == null) {
-                    copySidedClass(config, clientJar, clientEntry, outJar, true);
-                    processedClasses.add(className);
-                } else {
-                    serverClasses.remove(className);
-                    byte[] clientData = Utilities.readZipEntry(clientJar, clientEntry);
-                    byte[] serverData = Utilities.readZipEntry(serverJar, serverEntry);
-                    byte[] mergedData = mergeClasses(clientData, serverData, className);
-                    ZipEntry mergedEntry = new ZipEntry(clientEntry.getName());
-                    outJar.putNextEntry(mergedEntry);
-                    outJar.write(mergedData);
-                    processedClasses.add(className);
-                }
+                classPairs.add(new ClassPair(className, entry.getValue(), serverClasses.remove(className)));
+                processedClasses.add(className);
             }
-            // Process remaining server classes
-            for (Map.Entry<String, ZipEntry> entry : serverClasses.entrySet()) {
-                copySidedClass(config, serverJar, entry.getValue(), outJar, false);
+            // Remaining server classes
+            for (Map.Entry<String, ZipArchiveEntry> entry : serverClasses.entrySet()) {
+                classPairs.add(new ClassPair(entry.getKey(), null, entry.getValue()));
             }
+
+            // Merge the classes on all cores, but write them in the order of the list above
+            classPairs.parallelStream().map(pair -> {
+                try {
+                    return Pair.of(pair, processClass(config, clientJar, serverJar, pair));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }).forEachOrdered(processed -> {
+                try {
+                    if (processed.getRight() == null) {
+                        // Identical on both sides, keep the client copy as it is
+                        final ClassPair pair = processed.getLeft();
+                        outJar.copyRaw(clientJar, pair.clientEntry);
+                    } else {
+                        outJar.write(processed.getLeft().getEntryName(), processed.getRight());
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
             // Add the Side&SideOnly classes to the jar
             for (Class<?> klass : ImmutableList.of(sideClass, sideOnlyClass)) {
                 final String entityName = klass.getName().replace('.', '/');
                 final String zipPath = entityName + ".class";
                 if (!processedClasses.contains(entityName)) {
-                    ZipEntry newEntry = new ZipEntry(zipPath);
-                    outJar.putNextEntry(newEntry);
-                    outJar.write(Utilities.getClassBytes(klass));
+                    outJar.write(zipPath, Utilities.getClassBytes(klass));
                 }
             }
         }
@@ -230,9 +235,48 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
         final Set<String> dontProcess;
     }
 
-    private void copySidedClass(MergeConfig config, ZipFile inputJar, ZipEntry entry, ZipOutputStream outputJar,
+    /**
+     * A class found in the client jar, the server jar or both.
+     */
+    private static final class ClassPair {
+
+        final String className;
+        final ZipArchiveEntry clientEntry;
+        final ZipArchiveEntry serverEntry;
+
+        ClassPair(String className, ZipArchiveEntry clientEntry, ZipArchiveEntry serverEntry) {
+            this.className = className;
+            this.clientEntry = clientEntry;
+            this.serverEntry = serverEntry;
+        }
+
+        String getEntryName() {
+            return (clientEntry != null ? clientEntry : serverEntry).getName();
+        }
+    }
+
+    /**
+     * @return The class bytes to write, or null if the client class can be copied over unchanged
+     */
+    private byte[] processClass(MergeConfig config, ZipFile clientJar, ZipFile serverJar, ClassPair pair)
+            throws IOException {
+        if (pair.serverEntry == null) {
+            return annotateSidedClass(config, clientJar, pair.clientEntry, true);
+        } else if (pair.clientEntry == null) {
+            return annotateSidedClass(config, serverJar, pair.serverEntry, false);
+        }
+        final byte[] clientData = JarWriter.readEntry(clientJar, pair.clientEntry);
+        final byte[] serverData = JarWriter.readEntry(serverJar, pair.serverEntry);
+        if (Arrays.equals(clientData, serverData)) {
+            // Nothing is sided, the merge would only re-emit the same class
+            return null;
+        }
+        return mergeClasses(clientData, serverData, pair.className);
+    }
+
+    private byte[] annotateSidedClass(MergeConfig config, ZipFile inputJar, ZipArchiveEntry entry,
             boolean isClientOnly) throws IOException {
-        ClassNode classNode = Utilities.parseClassBytes(Utilities.readZipEntry(inputJar, entry), entry.getName());
+        ClassNode classNode = Utilities.parseClassBytes(JarWriter.readEntry(inputJar, entry), entry.getName());
 
         // Annotate with @SideOnly(Side.SIDE)
         if (!config.dontAnnotate.contains(classNode.name)) {
@@ -242,12 +286,7 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
             classNode.visibleAnnotations.add(makeSideAnnotation(isClientOnly));
         }
 
-        byte[] annotatedClass = Utilities.emitClassBytes(classNode, ClassWriter.COMPUTE_MAXS);
-        if (outputJar != null) {
-            ZipEntry newEntry = new ZipEntry(entry.getName());
-            outputJar.putNextEntry(newEntry);
-            outputJar.write(annotatedClass);
-        }
+        return Utilities.emitClassBytes(classNode, ClassWriter.COMPUTE_MAXS);
     }
 
     private byte[] mergeClasses(byte[] clientData, byte[] serverData, String debugName) {
@@ -262,20 +301,31 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
 
         // Process and add fields in the same order as ForgeGradle
         {
+            // Counts of the field names after the current position of each list, to avoid rescanning the lists. Fields
+            // are only ever inserted at the current position, which then moves past them, so the counts stay valid as
+            // long as each original field is removed once when reached.
+            final Map<String, Integer> clientFieldsAhead = countFieldNames(clientClass.fields);
+            final Map<String, Integer> serverFieldsAhead = countFieldNames(serverClass.fields);
+            final Set<FieldNode> reachedClientFields = Collections.newSetFromMap(new IdentityHashMap<>());
+            final Set<FieldNode> reachedServerFields = Collections.newSetFromMap(new IdentityHashMap<>());
             for (int cPos = 0, sPos = 0; cPos < clientClass.fields.size(); cPos++, sPos++) {
                 final FieldNode cNode = clientClass.fields.get(cPos);
+                if (reachedClientFields.add(cNode)) {
+                    clientFieldsAhead.merge(cNode.name, -1, Integer::sum);
+                }
                 final FieldOrMethod cFom = new FieldOrMethod(Distribution.CLIENT, cNode);
                 if (sPos < serverClass.fields.size()) {
                     final FieldNode sNode = serverClass.fields.get(sPos);
+                    if (reachedServerFields.add(sNode)) {
+                        serverFieldsAhead.merge(sNode.name, -1, Integer::sum);
+                    }
                     final FieldOrMethod sFom = new FieldOrMethod(Distribution.DEDICATED_SERVER, sNode);
                     entryKeys.add(sFom.getKey());
                     sidedEntries.put(sFom.getKey(), sFom);
                     if (!cNode.name.equals(sNode.name)) {
-                        final boolean foundServerField = serverClass.fields.stream().skip(sPos + 1)
-                                .anyMatch(sf -> sf.name.equals(cNode.name));
+                        final boolean foundServerField = serverFieldsAhead.getOrDefault(cNode.name, 0) > 0;
                         if (foundServerField) {
-                            final boolean foundClientField = clientClass.fields.stream().skip(cPos + 1)
-                                    .anyMatch(cf -> cf.name.equals(sNode.name));
+                            final boolean foundClientField = clientFieldsAhead.getOrDefault(sNode.name, 0) > 0;
                             if (!foundClientField) {
                                 clientClass.fields.add(cPos, sNode);
                             }
@@ -340,6 +390,14 @@ public abstract class MergeSidedJarsTask extends DefaultTask implements IJarOutp
         return Utilities.emitClassBytes(clientClass, ClassWriter.COMPUTE_MAXS);
     }
 
+    private static Map<String, Integer> countFieldNames(List<FieldNode> fields) {
+        final Map<String, Integer> counts = new HashMap<>(fields.size() * 2);
+        for (FieldNode field : fields) {
+            counts.merge(field.name, 1, Integer::sum);
+        }
+        return counts;
+    }
+
     private AnnotationNode makeSideAnnotation(boolean isClientOnly) {
         AnnotationNode an = new AnnotationNode(Type.getDescriptor(sideOnlyClass));
         an.values = new ArrayList<>(2);
@@ -18,14 +18,12 @@ import org.apache.commons.collections4.iterators.IteratorIterable;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.DefaultTask;
-import org.gradle.api.file.ArchiveOperations;
 import org.gradle.api.file.ConfigurableFileCollection;
-import org.gradle.api.file.FileCollection;
-import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
@@ -33,8 +31,10 @@ import org.gradle.api.tasks.TaskAction;
 import com.cloudbees.diff.PatchException;
 import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
 import com.gtnewhorizons.retrofuturagradle.util.IJarTransformTask;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
 import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+import com.gtnewhorizons.retrofuturagradle.util.patching.CompiledPatchSet;
 import com.gtnewhorizons.retrofuturagradle.util.patching.ContextualPatch;
 
 @CacheableTask
@@ -60,11 +60,11 @@ public abstract class PatchSourcesTask extends DefaultTask implements IJarTransf
     @Input
     public abstract Property<Integer> getPathComponentsToStrip();
 
-    @Inject
-    public abstract ObjectFactory getObjects();
-
-    @Inject
-    public abstract ArchiveOperations getArchiveOperations();
+    /**
+     * Optional cache to store pre-parsed patch bundles in, if not set the patches are parsed on every run.
+     */
+    @Internal
+    public abstract Property<RfgCacheService> getCacheService();
 
     @Override
     public MessageDigestConsumer hashInputs() {
@@ -100,7 +100,11 @@ public abstract class PatchSourcesTask extends DefaultTask implements IJarTransf
 
         patchFiles();
 
-        Utilities.saveMemoryJar(loadedResources, loadedSources, getOutputJar().get().getAsFile(), false);
+        Utilities.saveMemoryJar(
+                loadedResources,
+                loadedSources,
+                getOutputJar().get().getAsFile(),
+                getJarCompression().getOrElse(JarCompression.DEFAULT));
     }
 
     private void injectFiles() throws IOException {
@@ -129,20 +133,15 @@ public abstract class PatchSourcesTask extends DefaultTask implements IJarTransf
         try (final FileOutputStream fos = new FileOutputStream(logFile);
                 final BufferedOutputStream bos = new BufferedOutputStream(fos);
                 final PrintWriter logStream = new PrintWriter(bos)) {
+            final RfgCacheService cacheService = getCacheService().getOrNull();
             for (File patchSpec : getPatches()) {
-                final FileCollection patchFiles;
-                if (patchSpec.isDirectory()) {
-                    patchFiles = getObjects().fileTree().from(patchSpec);
-                } else if (patchSpec.getName().endsWith(".zip") || patchSpec.getName().endsWith(".jar")) {
-                    patchFiles = getArchiveOperations().zipTree(patchSpec);
-                } else {
-                    patchFiles = getObjects().fileCollection().from(patchSpec);
-                }
-                for (File patchFile : patchFiles) {
-                    logStream.printf("Applying patch %s from bundle %s%n", patchFile.getPath(), patchSpec.getPath());
+                final CompiledPatchSet patchSet = (cacheService != null)
+                        ? cacheService.accessCompiledPatchSet(patchSpec, null)
+                        : CompiledPatchSet.compile(CompiledPatchSet.readPatchBundle(patchSpec, null));
+                for (CompiledPatchSet.Entry patchFile : patchSet.getEntries()) {
+                    logStream.printf("Applying patch %s from bundle %s%n", patchFile.getName(), patchSpec.getPath());
                     patchCount++;
-                    final ContextualPatch patch = ContextualPatch
-                            .create(FileUtils.readFileToString(patchFile, StandardCharsets.UTF_8), contextProvider);
+                    final ContextualPatch patch = patchFile.createPatch(contextProvider);
                     patch.setAccessC14N(true);
                     patch.setMaxFuzz(getMaxFuzziness().get());
                     final List<ContextualPatch.PatchReport> reports = patch.patch(false);
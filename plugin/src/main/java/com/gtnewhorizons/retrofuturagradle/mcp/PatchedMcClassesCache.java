@@ -0,0 +1,126 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.StopExecutionException;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.jvm.toolchain.JavaInstallationMetadata;
+
+import com.gtnewhorizons.retrofuturagradle.BuildConfig;
+import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * Shares the compiled patched Minecraft classes between projects through the RFG cache. The classes are keyed by the
+ * remapped sources jar, the compile classpath and the compiler used, so any project on the same machine that
+ * decompiled byte-identical sources can reuse them instead of running javac over the whole game.
+ */
+public final class PatchedMcClassesCache {
+
+    /** Bump whenever the way the classes are compiled changes */
+    public static final int FORMAT_VERSION = 1;
+
+    private PatchedMcClassesCache() {}
+
+    /**
+     * @return The key to store the output of the given compile task under.
+     */
+    public static String computeKey(JavaCompile task, File sourcesJar) {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        HashUtils.addToHash(FORMAT_VERSION).andThen(HashUtils.addToHash(BuildConfig.PLUGIN_VERSION))
+                .andThen(HashUtils.addFileContentsToHash(sourcesJar)).accept(digest);
+        for (File entry : task.getClasspath()) {
+            if (entry.isDirectory()) {
+                HashUtils.addDirContentsToHash(entry).accept(digest);
+            } else {
+                HashUtils.addFileContentsToHash(entry).accept(digest);
+            }
+        }
+        if (task.getJavaCompiler().isPresent()) {
+            final JavaInstallationMetadata compiler = task.getJavaCompiler().get().getMetadata();
+            HashUtils.addToHash(compiler.getVendor()).andThen(HashUtils.addToHash(compiler.getJavaRuntimeVersion()))
+                    .accept(digest);
+        } else {
+            HashUtils.addToHash(System.getProperty("java.runtime.version")).accept(digest);
+        }
+        HashUtils.addToHash(task.getSourceCompatibility()).andThen(HashUtils.addToHash(task.getTargetCompatibility()))
+                .andThen(HashUtils.addToHash(String.valueOf(task.getOptions().getEncoding())))
+                .andThen(HashUtils.addToHash(String.join(" ", task.getOptions().getAllCompilerArgs())))
+                .accept(digest);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Runs before javac, on a cache hit it unpacks the cached classes into the destination directory and skips the
+     * compilation.
+     */
+    public static final class RestoreAction implements Action<Task> {
+
+        private final Provider<RfgCacheService> cacheService;
+        private final Provider<RegularFile> sourcesJar;
+
+        public RestoreAction(Provider<RfgCacheService> cacheService, Provider<RegularFile> sourcesJar) {
+            this.cacheService = cacheService;
+            this.sourcesJar = sourcesJar;
+        }
+
+        @Override
+        public void execute(Task task) {
+            final JavaCompile compileTask = (JavaCompile) task;
+            final String key = computeKey(compileTask, sourcesJar.get().getAsFile());
+            final Path cached = cacheService.get().findCompiledClasses(key);
+            if (cached == null) {
+                return;
+            }
+            final File destination = compileTask.getDestinationDirectory().get().getAsFile();
+            try {
+                if (destination.isDirectory()) {
+                    FileUtils.cleanDirectory(destination);
+                }
+                FileUtils.forceMkdir(destination);
+                // The incremental compilation data describes the previous javac run, not the restored classes
+                FileUtils.cleanDirectory(compileTask.getTemporaryDir());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Utilities.decompressArchive(ArchiveStreamFactory.ZIP, cached, destination.toPath());
+            task.getLogger().lifecycle("Restored the compiled Minecraft classes from the RFG cache");
+            throw new StopExecutionException();
+        }
+    }
+
+    /**
+     * Runs after javac, stores the compiled classes in the cache.
+     */
+    public static final class StoreAction implements Action<Task> {
+
+        private final Provider<RfgCacheService> cacheService;
+        private final Provider<RegularFile> sourcesJar;
+
+        public StoreAction(Provider<RfgCacheService> cacheService, Provider<RegularFile> sourcesJar) {
+            this.cacheService = cacheService;
+            this.sourcesJar = sourcesJar;
+        }
+
+        @Override
+        public void execute(Task task) {
+            final JavaCompile compileTask = (JavaCompile) task;
+            final String key = computeKey(compileTask, sourcesJar.get().getAsFile());
+            if (cacheService.get().findCompiledClasses(key) != null) {
+                return;
+            }
+            cacheService.get().storeCompiledClasses(key, compileTask.getDestinationDirectory().get().getAsFile());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ConfigurationContainer;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.dsl.DependencyHandler;
+import org.gradle.api.file.FileCollection;
+
+import com.gtnewhorizons.retrofuturagradle.BuildConfig;
+import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
+
+/**
+ * A prebuilt workspace is the remapped Minecraft sources jar and the recompiled Minecraft jar of one setup, published
+ * as a Maven artifact whose version is a digest of everything that goes into the decompilation pipeline. Projects with
+ * the same MC version, Forge version, mappings and access transformers can resolve it instead of decompiling and
+ * recompiling Minecraft themselves.
+ */
+public final class PrebuiltWorkspace {
+
+    public static final String GROUP = "com.gtnewhorizons.retrofuturagradle.workspace";
+    public static final String SOURCES_CLASSIFIER = "sources";
+
+    /** Bump whenever the decompilation pipeline produces different outputs from the same inputs */
+    public static final int FORMAT_VERSION = 1;
+
+    private final File patchedMcJar;
+    private final File sourcesJar;
+
+    private PrebuiltWorkspace(File patchedMcJar, File sourcesJar) {
+        this.patchedMcJar = patchedMcJar;
+        this.sourcesJar = sourcesJar;
+    }
+
+    /**
+     * @return The recompiled Minecraft jar, equivalent to the output of packagePatchedMc
+     */
+    public File getPatchedMcJar() {
+        return patchedMcJar;
+    }
+
+    /**
+     * @return The remapped sources jar, equivalent to the output of remapDecompiledJar
+     */
+    public File getSourcesJar() {
+        return sourcesJar;
+    }
+
+    public static String getArtifactId(String mcVersion) {
+        return "minecraft-" + mcVersion;
+    }
+
+    /**
+     * @return The directory of the given workspace version relative to the root of a Maven repository.
+     */
+    public static String getRelativePath(String mcVersion, String digest) {
+        return GROUP.replace('.', '/') + "/" + getArtifactId(mcVersion) + "/" + digest;
+    }
+
+    /**
+     * @param settings The values of all the non-file settings that affect the pipeline, by name
+     * @param files    The access transformers and other files read by the pipeline, only their contents matter
+     * @return The workspace version for the given inputs.
+     */
+    public static String computeDigest(Map<String, String> settings, FileCollection files) {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        HashUtils.addToHash(FORMAT_VERSION).andThen(HashUtils.addToHash(BuildConfig.PLUGIN_VERSION)).accept(digest);
+        for (Map.Entry<String, String> setting : new TreeMap<>(settings).entrySet()) {
+            HashUtils.addToHash(setting.getKey()).andThen(HashUtils.addToHash(setting.getValue())).accept(digest);
+        }
+        // Sorted by content rather than by path, so that the same files in a different project give the same digest
+        final List<String> fileDigests = new ArrayList<>();
+        for (File file : files.getAsFileTree().getFiles()) {
+            try {
+                fileDigests.add(DigestUtils.sha256Hex(FileUtils.readFileToByteArray(file)));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not hash file " + file, e);
+            }
+        }
+        Collections.sort(fileDigests);
+        for (String fileDigest : fileDigests) {
+            HashUtils.addToHash(fileDigest).accept(digest);
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Looks up the workspace in the project's repositories.
+     *
+     * @return The resolved workspace, or null if no repository has it.
+     */
+    public static @Nullable PrebuiltWorkspace resolve(ConfigurationContainer configurations,
+            DependencyHandler dependencies, String mcVersion, String digest) {
+        final String notation = GROUP + ":" + getArtifactId(mcVersion) + ":" + digest;
+        final Configuration cfg = configurations.detachedConfiguration(
+                dependencies.create(notation),
+                dependencies.create(notation + ":" + SOURCES_CLASSIFIER));
+        cfg.setTransitive(false);
+        File patchedMcJar = null;
+        File sourcesJar = null;
+        for (ResolvedArtifact artifact : cfg.getResolvedConfiguration().getLenientConfiguration().getArtifacts()) {
+            if (SOURCES_CLASSIFIER.equals(artifact.getClassifier())) {
+                sourcesJar = artifact.getFile();
+            } else if (artifact.getClassifier() == null) {
+                patchedMcJar = artifact.getFile();
+            }
+        }
+        return (patchedMcJar != null && sourcesJar != null) ? new PrebuiltWorkspace(patchedMcJar, sourcesJar) : null;
+    }
+
+    /**
+     * Writes the workspace into a Maven repository directory. The pom is written last, so a partially published
+     * workspace is never resolved.
+     */
+    public static void publish(File repository, String mcVersion, String digest, File patchedMcJar, File sourcesJar)
+            throws IOException {
+        final File versionDir = new File(repository, getRelativePath(mcVersion, digest));
+        final String baseName = getArtifactId(mcVersion) + "-" + digest;
+        FileUtils.forceMkdir(versionDir);
+        publishFile(patchedMcJar, new File(versionDir, baseName + ".jar"));
+        publishFile(sourcesJar, new File(versionDir, baseName + "-" + SOURCES_CLASSIFIER + ".jar"));
+
+        final String pom = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0"
+                + " https://maven.apache.org/xsd/maven-4.0.0.xsd\">\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>"
+                + GROUP
+                + "</groupId>\n"
+                + "  <artifactId>"
+                + getArtifactId(mcVersion)
+                + "</artifactId>\n"
+                + "  <version>"
+                + digest
+                + "</version>\n"
+                + "</project>\n";
+        final File pomFile = new File(versionDir, baseName + ".pom");
+        FileUtils.writeStringToFile(pomFile, pom, StandardCharsets.UTF_8);
+        writeChecksums(pomFile);
+    }
+
+    private static void publishFile(File source, File target) throws IOException {
+        FileUtils.copyFile(source, target);
+        writeChecksums(target);
+    }
+
+    private static void writeChecksums(File target) throws IOException {
+        final byte[] contents = FileUtils.readFileToByteArray(target);
+        FileUtils.writeStringToFile(
+                new File(target.getPath() + ".sha1"),
+                DigestUtils.sha1Hex(contents),
+                StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(
+                new File(target.getPath() + ".md5"),
+                DigestUtils.md5Hex(contents),
+                StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.IOException;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+/**
+ * Publishes the decompiled sources and the recompiled Minecraft jar as a {@link PrebuiltWorkspace} into a Maven
+ * repository directory, which can be served or synced to other machines as-is.
+ */
+@DisableCachingByDefault(because = "Only copies files into a repository")
+public abstract class PublishPrebuiltWorkspaceTask extends DefaultTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getPatchedMcJar();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSourcesJar();
+
+    @Input
+    public abstract Property<String> getMcVersion();
+
+    @Input
+    public abstract Property<String> getWorkspaceDigest();
+
+    @Internal
+    public abstract DirectoryProperty getRepositoryDirectory();
+
+    @OutputDirectory
+    public Provider<Directory> getPublicationDirectory() {
+        return getRepositoryDirectory()
+                .dir(getMcVersion().zip(getWorkspaceDigest(), PrebuiltWorkspace::getRelativePath));
+    }
+
+    @TaskAction
+    public void publishWorkspace() throws IOException {
+        final String digest = getWorkspaceDigest().get();
+        PrebuiltWorkspace.publish(
+                getRepositoryDirectory().getAsFile().get(),
+                getMcVersion().get(),
+                digest,
+                getPatchedMcJar().getAsFile().get(),
+                getSourcesJar().getAsFile().get());
+        getLogger().lifecycle("Published the prebuilt workspace {}", digest);
+    }
+}
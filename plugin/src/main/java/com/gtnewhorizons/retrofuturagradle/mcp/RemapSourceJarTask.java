@@ -4,17 +4,25 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.DefaultTask;
@@ -25,7 +33,9 @@ import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
@@ -52,16 +62,24 @@ import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSol
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import com.google.common.base.Strings;
+import com.google.common.collect.ListMultimap;
+import com.gtnewhorizons.retrofuturagradle.BuildConfig;
 import com.gtnewhorizons.retrofuturagradle.fgpatchers.JavadocAdder;
 import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
 import com.gtnewhorizons.retrofuturagradle.util.IJarTransformTask;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
 import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
+import com.gtnewhorizons.retrofuturagradle.util.SrgMappingTable;
+import com.gtnewhorizons.retrofuturagradle.util.SrgNameIndex;
+import com.gtnewhorizons.retrofuturagradle.util.SrgNameScanner;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
 
 @CacheableTask
 public abstract class RemapSourceJarTask extends DefaultTask implements IJarTransformTask {
 
     private static final boolean DEBUG_PRINT_ALL_GENERICS = false;
+    // [UPDATE] Generics version number
+    private static final int GENERICS_VERSION = 2;
 
     @InputFile
     @PathSensitive(PathSensitivity.NONE)
@@ -94,30 +112,52 @@ public abstract class RemapSourceJarTask extends DefaultTask implements IJarTran
     @Input
     public abstract Property<Boolean> getAddDummyJavadocs();
 
+    /**
+     * Optional service to share the parsed mapping files with other tasks, if not set they are parsed on every run.
+     */
+    @Internal
+    public abstract Property<MappingsService> getMappingsService();
+
+    /**
+     * The index of the SRG names used by every remapped file, next to the output jar by default. Lets the next run only
+     * remap the files affected by changed mappings.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getSrgIndexFile();
+
+    /**
+     * The classes whose sources changed in this run and need recompiling, one class name per line, next to the output
+     * jar by default. Lists every class after a full remap.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getRecompileListFile();
+
     @Override
     public MessageDigestConsumer hashInputs() {
         return HashUtils.addPropertyToHash(getFieldCsv()).andThen(HashUtils.addPropertyToHash(getMethodCsv()))
                 .andThen(HashUtils.addPropertyToHash(getParamCsv()))
                 .andThen(HashUtils.addPropertyToHash(getExtraParamsCsvs()))
-                .andThen(HashUtils.addPropertyToHash(getGenericFieldsCsvName())).andThen(
-                        // [UPDATE] Generics version number
-                        HashUtils.addToHash(2))
+                .andThen(HashUtils.addPropertyToHash(getGenericFieldsCsvName()))
+                .andThen(HashUtils.addToHash(GENERICS_VERSION))
                 .andThen(HashUtils.addPropertyToHash(getAddJavadocs()))
                 .andThen(HashUtils.addPropertyToHash(getAddDummyJavadocs()));
     }
 
     public RemapSourceJarTask() {
         getAddDummyJavadocs().convention(false);
+        getSrgIndexFile().convention(
+                getProject().getLayout().file(getOutputJar().getAsFile().map(SrgNameIndex::locationFor)));
+        getRecompileListFile().convention(
+                getProject().getLayout()
+                        .file(getOutputJar().getAsFile().map(jar -> new File(jar.getPath() + ".recompile.txt"))));
     }
 
     private final Map<String, byte[]> loadedResources = new HashMap<>();
     private final Map<String, String> loadedSources = new HashMap<>();
 
     private Utilities.MappingsSet mappings = new Utilities.MappingsSet();
+    private SrgMappingTable mappingTable;
 
-    // Matches SRG-style names (func_123_g/field_1_p/p_123_1_)
-    private static final Pattern SRG_FINDER = Pattern
-            .compile("(func_\\d+_[a-zA-Z_]+|field_\\d+_[a-zA-Z_]+|p_\\w+_\\d+_)([^\\w$]|$)");
     private static final Pattern METHOD_DEFINITION = Pattern
             .compile("^((?: {4})+|\\t+)(?:[\\w$.\\[\\]]+ )+([0-9a-zA-Z_]+)\\(");
 
@@ -132,20 +172,30 @@ public abstract class RemapSourceJarTask extends DefaultTask implements IJarTran
         loadedSources.clear();
         Utilities.loadMemoryJar(getInputJar().get().getAsFile(), loadedResources, loadedSources);
 
-        mappings = Utilities.loadMappingCsvs(
-                getMethodCsv().get().getAsFile(),
-                getFieldCsv().get().getAsFile(),
-                getParamCsv().getAsFile().getOrNull(),
-                getExtraParamsCsvs().getFiles(),
-                getGenericFieldsCsvName().getOrNull());
-
-        final Matcher mSrg = SRG_FINDER.matcher("");
-        final Matcher mMethod = METHOD_DEFINITION.matcher("");
-        final Matcher mField = FIELD_DEFINITION.matcher("");
-        final Matcher mCtor = CONSTRUCTOR_DEFINITION.matcher("");
+        final MappingsService mappingsService = getMappingsService().getOrNull();
+        if (mappingsService != null) {
+            final MappingsService.CsvMappings csvMappings = mappingsService.getCsvMappings(
+                    getMethodCsv().get().getAsFile(),
+                    getFieldCsv().get().getAsFile(),
+                    getParamCsv().getAsFile().getOrNull(),
+                    getExtraParamsCsvs().getFiles());
+            mappings = csvMappings.toMappingsSet(getGenericFieldsCsvName().getOrNull());
+            mappingTable = csvMappings.getMappingTable();
+        } else {
+            mappings = Utilities.loadMappingCsvs(
+                    getMethodCsv().get().getAsFile(),
+                    getFieldCsv().get().getAsFile(),
+                    getParamCsv().getAsFile().getOrNull(),
+                    getExtraParamsCsvs().getFiles(),
+                    getGenericFieldsCsvName().getOrNull());
+            mappingTable = mappings.toMappingTable();
+        }
 
         final boolean addJavadocs = getAddJavadocs().get();
         final boolean addDummyJavadocs = getAddDummyJavadocs().get();
+        final File outputJar = getOutputJar().get().getAsFile();
+        final File indexFile = getSrgIndexFile().get().getAsFile();
+        int totalGenericsApplied = 0;
 
         JavaParser javaParser = null;
         PrintWriter genLog = null;
@@ -181,230 +231,434 @@ public abstract class RemapSourceJarTask extends DefaultTask implements IJarTran
             mappings.genericPatches.clear();
         }
 
-        final Set<String> paramsApplied = new HashSet<>(16);
-        for (Map.Entry<String, String> srcEntry : loadedSources.entrySet()) {
-            final String originalSrc = srcEntry.getValue();
-            final String[] originalLines = originalSrc.split("(\r\n)|\n|\r");
-            final ArrayList<String> newLines = new ArrayList<>(originalLines.length);
-
-            for (final String originalLine : originalLines) {
-                String newLine = originalLine;
-                mSrg.reset(originalLine);
-                mMethod.reset(originalLine);
-                mField.reset(originalLine);
-                mCtor.reset(originalLine);
-                paramsApplied.clear();
-                if (!newLine.trim().startsWith("return ")) {
-                    if (mMethod.find() && !Character.isUpperCase(mMethod.group(2).charAt(0))) {
-                        final String methodName = mMethod.group(2);
-                        final Utilities.Mapping methodMapping = mappings.methodMappings.get(methodName);
-                        if ((addJavadocs || addDummyJavadocs) && methodMapping != null
-                                && !methodMapping.javadoc.isEmpty()) {
-                            addBeforeAnnotations(
-                                    newLines,
-                                    addDummyJavadocs ? (mMethod.group(1) + "// JAVADOC METHOD $$ " + methodName)
-                                            : JavadocAdder.buildJavadoc(mMethod.group(1), methodMapping.javadoc, true));
-                        }
-                        final List<Utilities.GenericMapping> genMaps = mappings.genericMappings.get(methodName);
-                        for (Utilities.GenericMapping genMap : genMaps) {
-                            if (!genMap.zipEntry.equals(srcEntry.getKey())) {
-                                continue;
-                            }
-                            if (paramsApplied.contains(genMap.param)) {
-                                continue;
-                            }
-                            final String[] typeComps = genMap.type.split("\\.");
-                            if (!newLine.contains(typeComps[typeComps.length - 1])) {
-                                continue;
-                            }
-                            genMap.uses++;
-                            paramsApplied.add(genMap.param);
-                            try {
-                                if (genMap.param.equals("@return")) {
-                                    final int parenIdx = newLine.indexOf('(');
-                                    final int nameIdx = newLine.substring(0, parenIdx).lastIndexOf(' ');
-                                    newLine = newLine.substring(0, nameIdx) + genMap.suffix
-                                            + newLine.substring(nameIdx);
-                                } else {
-                                    final int whichParam = Integer.parseInt(genMap.param);
-                                    final int paramsOffset = newLine.indexOf('(');
-                                    int paramStart = (whichParam == 0) ? (paramsOffset + 1)
-                                            : (StringUtils.ordinalIndexOf(newLine, ",", whichParam) + 1);
-                                    while (Character.isWhitespace(newLine.charAt(paramStart))) {
-                                        paramStart++;
-                                    }
-                                    int paramSplit = newLine.indexOf(' ', paramStart);
-                                    while (newLine.substring(0, paramSplit).trim().endsWith("final")) {
-                                        paramSplit = newLine.indexOf(' ', paramSplit + 1);
-                                    }
-                                    if (paramSplit == -1) {
-                                        throw new IllegalStateException(
-                                                "Could not find param " + whichParam
-                                                        + " in line: |"
-                                                        + newLine
-                                                        + "| file: "
-                                                        + srcEntry.getKey()
-                                                        + ":"
-                                                        + (newLines.size() + 1));
-                                    }
-                                    newLine = newLine.substring(0, paramSplit) + genMap.suffix
-                                            + newLine.substring(paramSplit);
-                                }
-                            } catch (Exception e) {
-                                throw new IllegalStateException(
-                                        "Error applying generic mapping " + genMap
-                                                + " to line |"
-                                                + newLine
-                                                + "| file: "
-                                                + srcEntry.getKey()
-                                                + ":"
-                                                + (newLines.size() + 1));
+        // Matchers are not thread-safe, so each worker thread gets its own set
+        final ThreadLocal<LineMatchers> matchers = ThreadLocal.withInitial(LineMatchers::new);
+        if (DEBUG_PRINT_ALL_GENERICS) {
+            for (Map.Entry<String, String> srcEntry : loadedSources.entrySet()) {
+                final List<String> newLines = remapFile(
+                        srcEntry.getKey(),
+                        srcEntry.getValue(),
+                        matchers.get(),
+                        null,
+                        addJavadocs,
+                        addDummyJavadocs);
+                srcEntry.setValue(StringUtils.join(newLines, System.lineSeparator()));
+
+                if (!srcEntry.getKey().startsWith("net/minecraft") && !srcEntry.getKey().startsWith("/net/minecraft")) {
+                    continue;
+                }
+
+                ParseResult<CompilationUnit> result = javaParser.parse(srcEntry.getValue());
+                CompilationUnit cu = result.getResult().orElse(null);
+                if (cu == null) {
+                    getLogger().error("{}: {}", srcEntry.getKey(), result.toString());
+                }
+                printRawGenericFile(genLog, srcEntry, newLines, cu);
+            }
+            for (ListMultimap<String, Utilities.GenericMapping> fileMappings : mappings.genericMappings.values()) {
+                for (Utilities.GenericMapping genMap : fileMappings.values()) {
+                    totalGenericsApplied += genMap.uses.get();
+                }
+            }
+            // The debug mode doesn't remap names, so the output doesn't match any index
+            FileUtils.deleteQuietly(indexFile);
+            writeRecompileList(loadedSources.keySet());
+            Utilities.saveMemoryJar(
+                    loadedResources,
+                    loadedSources,
+                    outputJar,
+                    getJarCompression().getOrElse(JarCompression.DEFAULT));
+        } else {
+            final Function<String, String> mappingStates = srgName -> mappingState(
+                    srgName,
+                    addJavadocs || addDummyJavadocs);
+            final String indexInputsKey = computeIndexInputsKey();
+            final SrgNameIndex previousIndex = loadPreviousIndex(indexFile, indexInputsKey, outputJar);
+            final SrgNameIndex index = previousIndex != null ? previousIndex : new SrgNameIndex(indexInputsKey);
+            final Map<String, String> previousSources = new HashMap<>();
+            final Set<String> filesToRemap;
+            if (previousIndex != null) {
+                // Only the mappings changed since the last run, rewrite just the files mentioning a changed name
+                final Set<String> changedNames = previousIndex.findChangedNames(mappingStates);
+                filesToRemap = previousIndex.findFilesUsing(changedNames);
+                Utilities.loadMemoryJar(outputJar, new HashMap<>(), previousSources);
+                for (String srcName : loadedSources.keySet()) {
+                    if (!previousSources.containsKey(srcName)) {
+                        filesToRemap.add(srcName);
+                    }
+                }
+                getLogger().lifecycle(
+                        "Mappings of {} names changed, remapping {} of {} files",
+                        changedNames.size(),
+                        filesToRemap.size(),
+                        loadedSources.size());
+                if (getLogger().isInfoEnabled()) {
+                    for (String srcName : filesToRemap) {
+                        final Map<String, int[]> fileNames = previousIndex.getFileNames(srcName);
+                        for (String changedName : changedNames) {
+                            final int[] lines = fileNames.get(changedName);
+                            if (lines != null) {
+                                getLogger().info("{}:{}-{} uses {}", srcName, lines[0], lines[1], changedName);
                             }
                         }
-                    } else if ((addJavadocs || addDummyJavadocs) && originalLine.trim().startsWith("// JAVADOC ")) {
-                        if (mSrg.find()) {
-                            final String indent = originalLine.substring(0, originalLine.indexOf("// JAVADOC"));
-                            final String entityName = mSrg.group();
-                            if (entityName.startsWith("func_")) {
-                                final Utilities.Mapping methodMapping = mappings.methodMappings.get(entityName);
-                                if (methodMapping != null && !Strings.isNullOrEmpty(methodMapping.javadoc)) {
-                                    newLine = JavadocAdder.buildJavadoc(indent, methodMapping.javadoc, true);
-                                }
-                            } else if (entityName.startsWith("field_")) {
-                                final Utilities.Mapping fieldMapping = mappings.fieldMappings.get(entityName);
-                                if (fieldMapping != null && !Strings.isNullOrEmpty(fieldMapping.javadoc)) {
-                                    newLine = JavadocAdder.buildJavadoc(indent, fieldMapping.javadoc, true);
-                                }
-                            }
+                    }
+                }
+            } else {
+                filesToRemap = loadedSources.keySet();
+            }
 
-                            if (newLine.endsWith(System.lineSeparator())) {
-                                newLine = newLine.substring(0, newLine.length() - System.lineSeparator().length());
-                            }
+            // Every file is remapped independently, the shared mappings are only read from
+            final Map<String, String> remappedSources = loadedSources.entrySet().parallelStream()
+                    .filter(srcEntry -> filesToRemap.contains(srcEntry.getKey())).collect(
+                            Collectors.toConcurrentMap(Map.Entry::getKey, srcEntry -> {
+                                final SrgNameIndex.FileNames fileNames = new SrgNameIndex.FileNames();
+                                final String remapped = StringUtils.join(
+                                        remapFile(
+                                                srcEntry.getKey(),
+                                                srcEntry.getValue(),
+                                                matchers.get(),
+                                                fileNames,
+                                                addJavadocs,
+                                                addDummyJavadocs),
+                                        System.lineSeparator());
+                                index.putFile(srcEntry.getKey(), fileNames);
+                                return remapped;
+                            }));
+
+            final List<String> changedSources = new ArrayList<>();
+            for (Map.Entry<String, String> remapped : remappedSources.entrySet()) {
+                if (!remapped.getValue().equals(previousSources.get(remapped.getKey()))) {
+                    changedSources.add(remapped.getKey());
+                }
+            }
+            if (previousIndex != null) {
+                for (Map.Entry<String, String> srcEntry : loadedSources.entrySet()) {
+                    if (!filesToRemap.contains(srcEntry.getKey())) {
+                        srcEntry.setValue(previousSources.get(srcEntry.getKey()));
+                    }
+                }
+            }
+            // Same key set, so the iteration order (and the output jar) matches the sequential version
+            loadedSources.putAll(remappedSources);
+
+            Utilities.saveMemoryJar(
+                    loadedResources,
+                    loadedSources,
+                    outputJar,
+                    getJarCompression().getOrElse(JarCompression.DEFAULT));
+            index.updateMappingStates(mappingStates);
+            index.setOutputDigest(digestFile(outputJar));
+            index.write(indexFile);
+            writeRecompileList(changedSources);
+            // The files that weren't remapped again keep the generics counted in the previous runs
+            totalGenericsApplied = index.countGenericsApplied();
+        }
+
+        getLogger().lifecycle("Applied {} missing generics", totalGenericsApplied);
+
+        if (genLog != null) {
+            genLog.close();
+        }
+    }
+
+    /**
+     * @return A digest of all the inputs other than the mappings that affect the remapped sources.
+     */
+    private String computeIndexInputsKey() {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        HashUtils.addPropertyToHash(getInputJar()).andThen(HashUtils.addPropertyToHash(getGenericFieldsCsvName()))
+                .andThen(HashUtils.addToHash(GENERICS_VERSION))
+                .andThen(HashUtils.addPropertyToHash(getAddJavadocs()))
+                .andThen(HashUtils.addPropertyToHash(getAddDummyJavadocs()))
+                .andThen(HashUtils.addToHash(BuildConfig.PLUGIN_VERSION))
+                .andThen(HashUtils.addToHash(SrgNameIndex.FORMAT_VERSION)).accept(digest);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @return The index of the previous run if the output jar can be updated incrementally, null otherwise.
+     */
+    private @Nullable SrgNameIndex loadPreviousIndex(File indexFile, String inputsKey, File outputJar) {
+        if (!indexFile.isFile() || !outputJar.isFile()) {
+            return null;
+        }
+        try {
+            final SrgNameIndex index = SrgNameIndex.read(indexFile);
+            if (index == null || !index.getInputsKey().equals(inputsKey)
+                    || !index.getOutputDigest().equals(digestFile(outputJar))) {
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            getLogger().warn("Could not read the remapping index {}, remapping all files", indexFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return Everything about the mapping of the given name that ends up in the remapped sources.
+     */
+    private String mappingState(String srgName, boolean withJavadocs) {
+        final String name = Strings.nullToEmpty(mappingTable.get(srgName));
+        if (!withJavadocs) {
+            return name;
+        }
+        final Utilities.Mapping member = srgName.startsWith("func_") ? mappings.methodMappings.get(srgName)
+                : srgName.startsWith("field_") ? mappings.fieldMappings.get(srgName) : null;
+        return member == null ? name : name + '\n' + member.javadoc;
+    }
+
+    private static String digestFile(File file) throws IOException {
+        return new DigestUtils(DigestUtils.getSha256Digest()).digestAsHex(file);
+    }
+
+    private void writeRecompileList(Collection<String> srcNames) throws IOException {
+        final File recompileListFile = getRecompileListFile().get().getAsFile();
+        final List<String> classesToRecompile = new ArrayList<>(srcNames.size());
+        for (String srcName : srcNames) {
+            classesToRecompile.add(toClassName(srcName));
+        }
+        classesToRecompile.sort(null);
+        FileUtils.writeLines(recompileListFile, StandardCharsets.UTF_8.name(), classesToRecompile);
+        getLogger().lifecycle(
+                "{} remapped classes changed and need recompiling, listed in {}",
+                classesToRecompile.size(),
+                recompileListFile);
+    }
+
+    private static String toClassName(String srcName) {
+        return StringUtils.removeEnd(StringUtils.removeStart(srcName, "/"), ".java").replace('/', '.');
+    }
+
+    /**
+     * Per-thread state used while remapping the lines of a file.
+     */
+    private static final class LineMatchers {
+
+        final Matcher mMethod = METHOD_DEFINITION.matcher("");
+        final Matcher mField = FIELD_DEFINITION.matcher("");
+        final Matcher mCtor = CONSTRUCTOR_DEFINITION.matcher("");
+        final Set<String> paramsApplied = new HashSet<>(16);
+    }
+
+    /**
+     * Remaps a single source file, safe to call concurrently for different files.
+     *
+     * @param fileNames Collects the SRG names used by the file and their lines, if not null
+     * @return The remapped lines of the file
+     */
+    private List<String> remapFile(String zipEntry, String originalSrc, LineMatchers matchers,
+            @Nullable SrgNameIndex.FileNames fileNames, boolean addJavadocs, boolean addDummyJavadocs) {
+        final String[] originalLines = originalSrc.split("(\r\n)|\n|\r");
+        final ArrayList<String> newLines = new ArrayList<>(originalLines.length);
+        final ListMultimap<String, Utilities.GenericMapping> fileGenerics = mappings.getGenericMappings(zipEntry);
+        final List<Utilities.GenericPatch> filePatches = mappings.genericPatches.get(zipEntry);
+
+        for (int lineIdx = 0; lineIdx < originalLines.length; lineIdx++) {
+            final String originalLine = originalLines[lineIdx];
+            String newLine = originalLine;
+            final Matcher mMethod = matchers.mMethod.reset(originalLine);
+            final Matcher mField = matchers.mField.reset(originalLine);
+            final Matcher mCtor = matchers.mCtor.reset(originalLine);
+            final Set<String> paramsApplied = matchers.paramsApplied;
+            paramsApplied.clear();
+            // All the definition patterns need an indented line, so skip the regexes for anything else
+            final boolean indented = !originalLine.isEmpty()
+                    && (originalLine.charAt(0) == ' ' || originalLine.charAt(0) == '\t');
+            final boolean hasParens = indented && originalLine.indexOf('(') != -1;
+            if (!isReturnStatement(newLine)) {
+                if (hasParens && mMethod.find() && !Character.isUpperCase(mMethod.group(2).charAt(0))) {
+                    final String methodName = mMethod.group(2);
+                    final Utilities.Mapping methodMapping = mappings.methodMappings.get(methodName);
+                    if ((addJavadocs || addDummyJavadocs) && methodMapping != null
+                            && !methodMapping.javadoc.isEmpty()) {
+                        addBeforeAnnotations(
+                                newLines,
+                                addDummyJavadocs ? (mMethod.group(1) + "// JAVADOC METHOD $$ " + methodName)
+                                        : JavadocAdder.buildJavadoc(mMethod.group(1), methodMapping.javadoc, true));
+                    }
+                    final List<Utilities.GenericMapping> genMaps = fileGenerics.get(methodName);
+                    for (Utilities.GenericMapping genMap : genMaps) {
+                        if (paramsApplied.contains(genMap.param)) {
+                            continue;
                         }
-                    } else if (mField.find()) {
-                        final String fieldName = mField.group(2);
-                        final Utilities.Mapping fieldMapping = mappings.fieldMappings.get(fieldName);
-                        if ((addJavadocs || addDummyJavadocs) && fieldMapping != null
-                                && !fieldMapping.javadoc.isEmpty()) {
-                            addBeforeAnnotations(
-                                    newLines,
-                                    addDummyJavadocs ? (mField.group(1) + "// JAVADOC FIELD $$ " + fieldName)
-                                            : JavadocAdder.buildJavadoc(mField.group(1), fieldMapping.javadoc, false));
+                        final String[] typeComps = genMap.type.split("\\.");
+                        if (!newLine.contains(typeComps[typeComps.length - 1])) {
+                            continue;
                         }
-                        final List<Utilities.GenericMapping> genMaps = mappings.genericMappings.get(fieldName);
-                        for (Utilities.GenericMapping genMap : genMaps) {
-                            if (!genMap.zipEntry.equals(srcEntry.getKey())) {
-                                continue;
-                            }
-                            genMap.uses++;
-                            final int splitIdx = newLine.indexOf(" field_");
-                            newLine = newLine.substring(0, splitIdx) + genMap.suffix + newLine.substring(splitIdx);
+                        genMap.uses.incrementAndGet();
+                        if (fileNames != null) {
+                            fileNames.recordGenericApplied();
                         }
-                    } else if (mCtor.find()) {
-                        final String key = srcEntry.getKey() + "@init:" + extractCtorSig(newLine, newLines.size() + 1);
-                        final List<Utilities.GenericMapping> genMaps = mappings.genericMappings.get(key);
-                        for (Utilities.GenericMapping genMap : genMaps) {
-                            if (!genMap.zipEntry.equals(srcEntry.getKey())) {
-                                continue;
-                            }
-                            if (paramsApplied.contains(genMap.param)) {
-                                continue;
-                            }
-                            final String[] typeComps = genMap.type.split("\\.");
-                            if (!newLine.contains(typeComps[typeComps.length - 1])) {
-                                continue;
-                            }
-                            genMap.uses++;
-                            paramsApplied.add(genMap.param);
-                            final int whichParam = Integer.parseInt(genMap.param);
-                            final int paramsOffset = newLine.indexOf('(');
-                            int paramStart = (whichParam == 0) ? (paramsOffset + 1)
-                                    : (StringUtils.ordinalIndexOf(newLine, ",", whichParam) + 1);
-                            while (Character.isWhitespace(newLine.charAt(paramStart))) {
-                                paramStart++;
+                        paramsApplied.add(genMap.param);
+                        try {
+                            if (genMap.param.equals("@return")) {
+                                final int parenIdx = newLine.indexOf('(');
+                                final int nameIdx = newLine.substring(0, parenIdx).lastIndexOf(' ');
+                                newLine = newLine.substring(0, nameIdx) + genMap.suffix
+                                        + newLine.substring(nameIdx);
+                            } else {
+                                final int whichParam = Integer.parseInt(genMap.param);
+                                final int paramsOffset = newLine.indexOf('(');
+                                int paramStart = (whichParam == 0) ? (paramsOffset + 1)
+                                        : (StringUtils.ordinalIndexOf(newLine, ",", whichParam) + 1);
+                                while (Character.isWhitespace(newLine.charAt(paramStart))) {
+                                    paramStart++;
+                                }
+                                int paramSplit = newLine.indexOf(' ', paramStart);
+                                while (newLine.substring(0, paramSplit).trim().endsWith("final")) {
+                                    paramSplit = newLine.indexOf(' ', paramSplit + 1);
+                                }
+                                if (paramSplit == -1) {
+                                    throw new IllegalStateException(
+                                            "Could not find param " + whichParam
+                                                    + " in line: |"
+                                                    + newLine
+                                                    + "| file: "
+                                                    + zipEntry
+                                                    + ":"
+                                                    + (newLines.size() + 1));
+                                }
+                                newLine = newLine.substring(0, paramSplit) + genMap.suffix
+                                        + newLine.substring(paramSplit);
                             }
-                            int paramSplit = newLine.indexOf(' ', paramStart);
-                            while (newLine.substring(0, paramSplit).trim().endsWith("final")) {
-                                paramSplit = newLine.indexOf(' ', paramSplit + 1);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(
+                                    "Error applying generic mapping " + genMap
+                                            + " to line |"
+                                            + newLine
+                                            + "| file: "
+                                            + zipEntry
+                                            + ":"
+                                            + (newLines.size() + 1));
+                        }
+                    }
+                } else if ((addJavadocs || addDummyJavadocs) && originalLine.trim().startsWith("// JAVADOC ")) {
+                    final int srgStart = SrgNameScanner.findSrgName(originalLine, 0);
+                    if (srgStart != -1) {
+                        final String indent = originalLine.substring(0, originalLine.indexOf("// JAVADOC"));
+                        final String entityName = originalLine
+                                .substring(srgStart, SrgNameScanner.matchSrgName(originalLine, srgStart));
+                        if (entityName.startsWith("func_")) {
+                            final Utilities.Mapping methodMapping = mappings.methodMappings.get(entityName);
+                            if (methodMapping != null && !Strings.isNullOrEmpty(methodMapping.javadoc)) {
+                                newLine = JavadocAdder.buildJavadoc(indent, methodMapping.javadoc, true);
                             }
-                            if (paramSplit == -1) {
-                                throw new IllegalStateException(
-                                        "Could not find param " + whichParam
-                                                + " in line: |"
-                                                + newLine
-                                                + "| file: "
-                                                + srcEntry.getKey()
-                                                + ":"
-                                                + (newLines.size() + 1));
+                        } else if (entityName.startsWith("field_")) {
+                            final Utilities.Mapping fieldMapping = mappings.fieldMappings.get(entityName);
+                            if (fieldMapping != null && !Strings.isNullOrEmpty(fieldMapping.javadoc)) {
+                                newLine = JavadocAdder.buildJavadoc(indent, fieldMapping.javadoc, true);
                             }
-                            newLine = newLine.substring(0, paramSplit) + genMap.suffix + newLine.substring(paramSplit);
+                        }
+
+                        if (newLine.endsWith(System.lineSeparator())) {
+                            newLine = newLine.substring(0, newLine.length() - System.lineSeparator().length());
                         }
                     }
-                }
-                if (!mappings.genericMappings.isEmpty()) {
-                    // Extra patches
-                    newLine = newLine.replace("(Object)null", "null");
-                }
-                if (!DEBUG_PRINT_ALL_GENERICS) {
-                    final StringBuffer mappedLine = new StringBuffer();
-                    mSrg.reset(newLine);
-                    while (mSrg.find()) {
-                        final String found = mSrg.group(1);
-                        final String mapped;
-                        if (found.startsWith("p_")) {
-                            mapped = mappings.paramMappings.getOrDefault(found, found);
-                        } else if (found.startsWith("func_")) {
-                            final Utilities.Mapping mapping = mappings.methodMappings.get(found);
-                            mapped = (mapping != null) ? mapping.name : found;
-                        } else if (found.startsWith("field_")) {
-                            final Utilities.Mapping mapping = mappings.fieldMappings.get(found);
-                            mapped = (mapping != null) ? mapping.name : found;
-                        } else {
-                            mapped = found;
+                } else if (indented && originalLine.contains("field_") && mField.find()) {
+                    final String fieldName = mField.group(2);
+                    final Utilities.Mapping fieldMapping = mappings.fieldMappings.get(fieldName);
+                    if ((addJavadocs || addDummyJavadocs) && fieldMapping != null
+                            && !fieldMapping.javadoc.isEmpty()) {
+                        addBeforeAnnotations(
+                                newLines,
+                                addDummyJavadocs ? (mField.group(1) + "// JAVADOC FIELD $$ " + fieldName)
+                                        : JavadocAdder.buildJavadoc(mField.group(1), fieldMapping.javadoc, false));
+                    }
+                    final List<Utilities.GenericMapping> genMaps = fileGenerics.get(fieldName);
+                    for (Utilities.GenericMapping genMap : genMaps) {
+                        genMap.uses.incrementAndGet();
+                        if (fileNames != null) {
+                            fileNames.recordGenericApplied();
                         }
-                        mSrg.appendReplacement(mappedLine, mapped);
-                        mappedLine.append(mSrg.group(2));
+                        final int splitIdx = newLine.indexOf(" field_");
+                        newLine = newLine.substring(0, splitIdx) + genMap.suffix + newLine.substring(splitIdx);
                     }
-                    mSrg.appendTail(mappedLine);
-                    newLine = mappedLine.toString();
-
-                    final List<Utilities.GenericPatch> patches = mappings.genericPatches.get(srcEntry.getKey());
-                    for (Utilities.GenericPatch patch : patches) {
-                        if (newLine.contains(patch.containsFilter)) {
-                            newLine = newLine.replace(patch.toReplace, patch.replaceWith);
+                } else if (hasParens && !fileGenerics.isEmpty() && mCtor.find()) {
+                    final String key = "@init:" + extractCtorSig(newLine, newLines.size() + 1);
+                    final List<Utilities.GenericMapping> genMaps = fileGenerics.get(key);
+                    for (Utilities.GenericMapping genMap : genMaps) {
+                        if (paramsApplied.contains(genMap.param)) {
+                            continue;
+                        }
+                        final String[] typeComps = genMap.type.split("\\.");
+                        if (!newLine.contains(typeComps[typeComps.length - 1])) {
+                            continue;
+                        }
+                        genMap.uses.incrementAndGet();
+                        if (fileNames != null) {
+                            fileNames.recordGenericApplied();
+                        }
+                        paramsApplied.add(genMap.param);
+                        final int whichParam = Integer.parseInt(genMap.param);
+                        final int paramsOffset = newLine.indexOf('(');
+                        int paramStart = (whichParam == 0) ? (paramsOffset + 1)
+                                : (StringUtils.ordinalIndexOf(newLine, ",", whichParam) + 1);
+                        while (Character.isWhitespace(newLine.charAt(paramStart))) {
+                            paramStart++;
+                        }
+                        int paramSplit = newLine.indexOf(' ', paramStart);
+                        while (newLine.substring(0, paramSplit).trim().endsWith("final")) {
+                            paramSplit = newLine.indexOf(' ', paramSplit + 1);
                         }
+                        if (paramSplit == -1) {
+                            throw new IllegalStateException(
+                                    "Could not find param " + whichParam
+                                            + " in line: |"
+                                            + newLine
+                                            + "| file: "
+                                            + zipEntry
+                                            + ":"
+                                            + (newLines.size() + 1));
+                        }
+                        newLine = newLine.substring(0, paramSplit) + genMap.suffix + newLine.substring(paramSplit);
                     }
                 }
-                newLines.add(newLine);
             }
-
-            srcEntry.setValue(StringUtils.join(newLines, System.lineSeparator()));
-
-            if (DEBUG_PRINT_ALL_GENERICS) {
-                if (!srcEntry.getKey().startsWith("net/minecraft") && !srcEntry.getKey().startsWith("/net/minecraft")) {
-                    continue;
+            if (!mappings.genericMappings.isEmpty() && newLine.contains("(Object)null")) {
+                // Extra patches
+                newLine = newLine.replace("(Object)null", "null");
+            }
+            if (fileNames != null) {
+                fileNames.record(originalLine, lineIdx + 1);
+                if (newLine != originalLine) {
+                    // Javadocs and generics can bring in names that are not in the original line
+                    fileNames.record(newLine, lineIdx + 1);
                 }
+            }
+            if (!DEBUG_PRINT_ALL_GENERICS) {
+                newLine = SrgNameScanner.remap(newLine, mappingTable);
 
-                ParseResult<CompilationUnit> result = javaParser.parse(srcEntry.getValue());
-                CompilationUnit cu = result.getResult().orElse(null);
-                if (cu == null) {
-                    getLogger().error("{}: {}", srcEntry.getKey(), result.toString());
+                for (Utilities.GenericPatch patch : filePatches) {
+                    if (newLine.contains(patch.containsFilter)) {
+                        newLine = newLine.replace(patch.toReplace, patch.replaceWith);
+                    }
                 }
-                printRawGenericFile(genLog, srcEntry, newLines, cu);
             }
+            newLines.add(newLine);
         }
+        return newLines;
+    }
 
-        int totalGenericsApplied = 0;
-        for (Map.Entry<String, Utilities.GenericMapping> entry : mappings.genericMappings.entries()) {
-            totalGenericsApplied += entry.getValue().uses;
+    /**
+     * Equivalent to {@code line.trim().startsWith("return ")} without creating a trimmed copy of the line.
+     */
+    private static boolean isReturnStatement(String line) {
+        final int length = line.length();
+        int start = 0;
+        while (start < length && line.charAt(start) <= ' ') {
+            start++;
         }
-        getLogger().lifecycle("Applied {} missing generics", totalGenericsApplied);
-
-        if (genLog != null) {
-            genLog.close();
+        if (!line.startsWith("return ", start)) {
+            return false;
         }
-
-        Utilities.saveMemoryJar(loadedResources, loadedSources, getOutputJar().get().getAsFile(), false);
+        // trim() would also cut the trailing space off a bare "return "
+        for (int i = start + 7; i < length; i++) {
+            if (line.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static String extractCtorSig(String line, int lineNo) {
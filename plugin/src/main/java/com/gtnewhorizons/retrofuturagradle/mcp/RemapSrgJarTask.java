@@ -0,0 +1,93 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
+import com.gtnewhorizons.retrofuturagradle.util.IJarTransformTask;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+import com.gtnewhorizons.retrofuturagradle.util.MessageDigestConsumer;
+import com.gtnewhorizons.retrofuturagradle.util.SrgMappingTable;
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * Renames the SRG fields and methods of a compiled jar to their MCP names, the same way deobfuscated dependencies are
+ * remapped.
+ */
+@CacheableTask
+public abstract class RemapSrgJarTask extends DefaultTask implements IJarTransformTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getFieldCsv();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getMethodCsv();
+
+    /**
+     * Optional cache to read the mapping snapshot from, if not set the CSVs are parsed on every run.
+     */
+    @Internal
+    public abstract Property<RfgCacheService> getCacheService();
+
+    @Override
+    public MessageDigestConsumer hashInputs() {
+        return HashUtils.addPropertyToHash(getFieldCsv()).andThen(HashUtils.addPropertyToHash(getMethodCsv()));
+    }
+
+    @TaskAction
+    public void remapJar() throws IOException {
+        final File fieldCsv = getFieldCsv().get().getAsFile();
+        final File methodCsv = getMethodCsv().get().getAsFile();
+        final RfgCacheService cacheService = getCacheService().getOrNull();
+        final SrgMappingTable mappingTable = (cacheService != null)
+                ? cacheService.accessMappingSnapshot(methodCsv, fieldCsv, null, null).toMappingTable()
+                : Utilities.loadMappingCsvs(methodCsv, fieldCsv, null, null, null).toMappingTable();
+
+        final File outputJar = getOutputJar().get().getAsFile();
+        FileUtils.deleteQuietly(outputJar);
+
+        try (final ZipFile inZip = JarWriter.openArchive(getInputJar().get().getAsFile());
+                final JarWriter out = new JarWriter(outputJar, getJarCompression().getOrElse(JarCompression.DEFAULT))) {
+            final List<ZipArchiveEntry> entries = JarWriter.sortedEntries(inZip);
+            // Remap classes on all cores, but write the entries sorted by name for a reproducible jar
+            entries.parallelStream().map(e -> {
+                if (e.isDirectory() || !e.getName().endsWith(".class")) {
+                    return Pair.of(e, (byte[]) null);
+                }
+                try {
+                    return Pair.of(e, Utilities.simpleRemapClass(JarWriter.readEntry(inZip, e), mappingTable));
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }).forEachOrdered(remapped -> {
+                try {
+                    if (remapped.getRight() == null) {
+                        out.copyRaw(inZip, remapped.getLeft());
+                    } else {
+                        out.write(remapped.getLeft().getName(), remapped.getRight());
+                    }
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+        }
+    }
+}
@@ -2,13 +2,9 @@ package com.gtnewhorizons.retrofuturagradle.mcp;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URLClassLoader;
-import java.util.Set;
 
 import net.md_5.specialsource.JarMapping;
 import net.md_5.specialsource.JarRemapper;
-import net.md_5.specialsource.provider.ClassLoaderProvider;
-import net.md_5.specialsource.provider.JarProvider;
 import net.md_5.specialsource.provider.JointProvider;
 
 import org.apache.commons.io.FileUtils;
@@ -22,6 +18,7 @@ import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskProvider;
@@ -29,7 +26,7 @@ import org.gradle.jvm.tasks.Jar;
 
 import com.gtnewhorizons.retrofuturagradle.Constants;
 import com.gtnewhorizons.retrofuturagradle.fgpatchers.ReobfExceptor;
-import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+import com.gtnewhorizons.retrofuturagradle.util.ClassHierarchyIndex;
 
 @CacheableTask
 public abstract class ReobfuscatedJar extends Jar {
@@ -72,6 +69,19 @@ public abstract class ReobfuscatedJar extends Jar {
     @Classpath
     public abstract ConfigurableFileCollection getReferenceClasspath();
 
+    /**
+     * Optional service to share the parsed mapping files with other tasks, if not set they are parsed on every run.
+     */
+    @Internal
+    public abstract Property<MappingsService> getMappingsService();
+
+    /**
+     * Optional cache to store what the exceptor reads from the recompiled jar and the SRG it builds, if not set they
+     * are recomputed on every run.
+     */
+    @Internal
+    public abstract Property<RfgCacheService> getCacheService();
+
     /**
      * Sets the inputJar property to the output of the given Jar task, and copies all jar attributes (base name,
      * appendix, version, extension) except the classifier as default values for the output jar properties.
@@ -90,22 +100,38 @@ public abstract class ReobfuscatedJar extends Jar {
         try {
             final File tmpDir = getTemporaryDir();
             final File tmpObfedJar = new File(tmpDir, "working.jar");
-            final File recompJar = new File(tmpDir, "recomp.jar");
             final File tmpInjectedJar = new File(tmpDir, "inject.jar");
             FileUtils.copyFile(getInputJar().get().getAsFile(), tmpObfedJar);
-            FileUtils.copyFile(getRecompMcJar().get().getAsFile(), recompJar);
 
-            final File srg = File.createTempFile("reobf-default", ".srg", tmpDir);
             final File extraSrg = File.createTempFile("reobf-extra", ".srg", tmpDir);
             final ReobfExceptor exc = new ReobfExceptor();
             exc.deobfJar = tmpObfedJar;
-            exc.toReobfJar = recompJar;
+            // Only read, never written to
+            exc.toReobfJar = getRecompMcJar().get().getAsFile();
             exc.excConfig = getExceptorCfg().get().getAsFile();
             exc.fieldCSV = getFieldCsv().get().getAsFile();
             exc.methodCSV = getMethodCsv().get().getAsFile();
+            final MappingsService mappingsService = getMappingsService().getOrNull();
+            if (mappingsService != null) {
+                exc.csvNames = mappingsService.getCsvMappings(exc.methodCSV, exc.fieldCSV, null, null)
+                        .getMemberNames();
+                exc.excClassMarkers = mappingsService.getExcClassMarkers(exc.excConfig);
+            }
+            final RfgCacheService cacheService = getCacheService().getOrNull();
+            if (cacheService != null) {
+                exc.recompInfo = cacheService.accessReobfRecompInfo(exc);
+            }
             exc.doFirstThings();
 
-            exc.buildSrg(getSrg().get().getAsFile(), srg);
+            // Unless the mod jar has access methods of its own the SRG only depends on Minecraft and the mappings
+            final File srg;
+            final boolean cachedSrg = cacheService != null && !exc.hasAccessRenames();
+            if (cachedSrg) {
+                srg = cacheService.accessReobfSrg(exc, getSrg().get().getAsFile()).toFile();
+            } else {
+                srg = File.createTempFile("reobf-default", ".srg", tmpDir);
+                exc.buildSrg(getSrg().get().getAsFile(), srg);
+            }
             FileUtils.writeLines(extraSrg, getExtraSrgEntries().get());
 
             final JarMapping mapping = new JarMapping();
@@ -122,11 +148,17 @@ public abstract class ReobfuscatedJar extends Jar {
 
             try (net.md_5.specialsource.Jar inputJar = net.md_5.specialsource.Jar.init(tmpObfedJar)) {
                 JointProvider inheritanceProviders = new JointProvider();
-                inheritanceProviders.add(new JarProvider(inputJar));
-                Set<File> cpFiles = getReferenceClasspath().getFiles();
-                if (!cpFiles.isEmpty()) {
-                    inheritanceProviders
-                            .add(new ClassLoaderProvider(new URLClassLoader(Utilities.filesToURLArray(cpFiles))));
+                // The mod jar changes on every build, so its index is not worth caching
+                inheritanceProviders.add(ClassHierarchyIndex.build(tmpObfedJar)::getParents);
+                // JDK classes are left out, nothing in them can be remapped
+                for (File cpFile : getReferenceClasspath().getFiles()) {
+                    if (!cpFile.exists()) {
+                        continue;
+                    }
+                    final ClassHierarchyIndex cpIndex = (mappingsService != null)
+                            ? mappingsService.getClassHierarchyIndex(cpFile)
+                            : ClassHierarchyIndex.build(cpFile);
+                    inheritanceProviders.add(cpIndex::getParents);
                 }
                 mapping.setFallbackInheritanceProvider(inheritanceProviders);
 
@@ -139,9 +171,10 @@ public abstract class ReobfuscatedJar extends Jar {
             if (!Constants.DEBUG_NO_TMP_CLEANUP) {
                 FileUtils.deleteQuietly(tmpInjectedJar);
                 FileUtils.deleteQuietly(tmpObfedJar);
-                FileUtils.deleteQuietly(srg);
+                if (!cachedSrg) {
+                    FileUtils.deleteQuietly(srg);
+                }
                 FileUtils.deleteQuietly(extraSrg);
-                FileUtils.deleteQuietly(recompJar);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
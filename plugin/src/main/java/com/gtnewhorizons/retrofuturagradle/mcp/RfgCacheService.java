@@ -2,22 +2,34 @@ package com.gtnewhorizons.retrofuturagradle.mcp;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.invocation.Gradle;
@@ -29,7 +41,15 @@ import org.gradle.api.services.BuildServiceParameters;
 import org.jetbrains.annotations.Nullable;
 
 import com.gtnewhorizons.retrofuturagradle.Constants;
+import com.gtnewhorizons.retrofuturagradle.fgpatchers.ReobfExceptor;
+import com.gtnewhorizons.retrofuturagradle.util.ClassHierarchyIndex;
+import com.gtnewhorizons.retrofuturagradle.util.HashUtils;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+import com.gtnewhorizons.retrofuturagradle.util.MappingSnapshot;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+import com.gtnewhorizons.retrofuturagradle.util.patching.BinaryPatchSet;
+import com.gtnewhorizons.retrofuturagradle.util.patching.CompiledPatchSet;
 
 /**
  * A shared build service that can fetch and provide cached forge, mapping, etc. data for various MC versions.
@@ -247,4 +267,371 @@ public abstract class RfgCacheService implements BuildService<RfgCacheService.Pa
                 .resolve("mcp_" + channel).resolve(mcpVersion);
         return accessDownloadableZipData(mcpRoot, urls, null);
     }
+
+    /**
+     * @param bundle A patch archive (zip/jar), directory or a single patch file
+     * @param filter Only files whose name contains this string are included, or null to include all files
+     * @return The pre-parsed patches from the bundle, loaded from the RFG cache or compiled and stored in it.
+     */
+    public CompiledPatchSet accessCompiledPatchSet(final File bundle, @Nullable final String filter) {
+        try {
+            final String digest = CompiledPatchSet.digestPatchBundle(bundle, filter);
+            final Path cachedPath = getRfgCachePath().resolve("patch-sets").resolve(digest + ".bin");
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isRegularFile(cachedPath)) {
+                    final CompiledPatchSet cached = CompiledPatchSet.read(cachedPath.toFile());
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the cached patch set {}, recompiling it", cachedPath, e);
+            }
+
+            final CompiledPatchSet compiled = CompiledPatchSet
+                    .compile(CompiledPatchSet.readPatchBundle(bundle, filter));
+            try (final FileLock ignored = lockCache(false)) {
+                final Path parentPath = cachedPath.getParent();
+                if (!Files.exists(parentPath)) {
+                    Files.createDirectories(parentPath);
+                }
+                final Path tempPath = Files.createTempFile(parentPath, "rfg-patches-", ".tmp");
+                compiled.write(tempPath.toFile());
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return compiled;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The decoded class patches of the given binpatch archive, loaded from the RFG cache or decoded and stored
+     *         in it.
+     */
+    public BinaryPatchSet accessBinaryPatchSet(final File patchesLzma) {
+        try {
+            final String digest = BinaryPatchSet.digestPatchArchive(patchesLzma);
+            final Path cachedPath = getRfgCachePath().resolve("binpatches").resolve(digest + ".bin");
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isRegularFile(cachedPath)) {
+                    final BinaryPatchSet cached = BinaryPatchSet.read(cachedPath.toFile());
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the cached binary patches {}, decoding them again", cachedPath, e);
+            }
+
+            final BinaryPatchSet decoded = BinaryPatchSet.decode(patchesLzma);
+            try (final FileLock ignored = lockCache(false)) {
+                final Path parentPath = cachedPath.getParent();
+                if (!Files.exists(parentPath)) {
+                    Files.createDirectories(parentPath);
+                }
+                final Path tempPath = Files.createTempFile(parentPath, "rfg-binpatches-", ".tmp");
+                decoded.write(tempPath.toFile());
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return decoded;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return A memory-mapped snapshot of the given MCP CSVs, loaded from the RFG cache or compiled and stored in it.
+     */
+    public MappingSnapshot accessMappingSnapshot(final File methodsCsv, final File fieldsCsv,
+            @Nullable final File paramsCsv, @Nullable final Collection<File> extraParamsCsvs) {
+        try {
+            final String digest = MappingSnapshot.digestCsvs(methodsCsv, fieldsCsv, paramsCsv, extraParamsCsvs);
+            final Path cachedPath = getRfgCachePath().resolve("mapping-snapshots").resolve(digest + ".bin");
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isRegularFile(cachedPath)) {
+                    final MappingSnapshot cached = MappingSnapshot.open(cachedPath.toFile());
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the cached mapping snapshot {}, recompiling it", cachedPath, e);
+            }
+
+            final Utilities.MappingsSet parsed = Utilities
+                    .loadMappingCsvs(methodsCsv, fieldsCsv, paramsCsv, extraParamsCsvs, null);
+            try (final FileLock ignored = lockCache(false)) {
+                final Path parentPath = cachedPath.getParent();
+                if (!Files.exists(parentPath)) {
+                    Files.createDirectories(parentPath);
+                }
+                final Path tempPath = Files.createTempFile(parentPath, "rfg-mappings-", ".tmp");
+                MappingSnapshot.write(parsed, tempPath.toFile());
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+                return MappingSnapshot.open(cachedPath.toFile());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The class hierarchy of the given jar, loaded from the RFG cache or indexed and stored in it.
+     */
+    public ClassHierarchyIndex accessClassHierarchyIndex(final File jar) {
+        try {
+            final String digest = ClassHierarchyIndex.digestJar(jar);
+            final Path cachedPath = getRfgCachePath().resolve("class-hierarchy").resolve(digest + ".bin");
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isRegularFile(cachedPath)) {
+                    final ClassHierarchyIndex cached = ClassHierarchyIndex.read(cachedPath.toFile());
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the cached class hierarchy {}, reindexing it", cachedPath, e);
+            }
+
+            final ClassHierarchyIndex index = ClassHierarchyIndex.build(jar);
+            try (final FileLock ignored = lockCache(false)) {
+                final Path parentPath = cachedPath.getParent();
+                if (!Files.exists(parentPath)) {
+                    Files.createDirectories(parentPath);
+                }
+                final Path tempPath = Files.createTempFile(parentPath, "rfg-hierarchy-", ".tmp");
+                index.write(tempPath.toFile());
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return index;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param exceptor An exceptor with the recompiled jar and the exc config set
+     * @return The class renames and access methods of the recompiled jar, loaded from the RFG cache or read from the
+     *         jar and stored in it.
+     */
+    public ReobfExceptor.RecompInfo accessReobfRecompInfo(final ReobfExceptor exceptor) {
+        try {
+            final Path cachedPath = getRfgCachePath().resolve("reobf-exceptor")
+                    .resolve(digestRecompInfo(exceptor) + ".bin");
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isRegularFile(cachedPath)) {
+                    final ReobfExceptor.RecompInfo cached = ReobfExceptor.RecompInfo.read(cachedPath.toFile());
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the cached reobfuscation info {}, reading the jar again", cachedPath, e);
+            }
+
+            final ReobfExceptor.RecompInfo info = exceptor.readRecompInfo();
+            try (final FileLock ignored = lockCache(false)) {
+                final Path parentPath = cachedPath.getParent();
+                if (!Files.exists(parentPath)) {
+                    Files.createDirectories(parentPath);
+                }
+                final Path tempPath = Files.createTempFile(parentPath, "rfg-reobf-", ".tmp");
+                info.write(tempPath.toFile());
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return info;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param exceptor An exceptor after {@link ReobfExceptor#doFirstThings()}, without access renames from the
+     *                 deobfuscated jar so that the result doesn't depend on it
+     * @param baseSrg  The SRG to rewrite
+     * @return The SRG built by the exceptor, loaded from the RFG cache or built and stored in it.
+     */
+    public Path accessReobfSrg(final ReobfExceptor exceptor, final File baseSrg) {
+        if (exceptor.hasAccessRenames()) {
+            throw new IllegalArgumentException("The SRG depends on the deobfuscated jar and can't be cached");
+        }
+        try {
+            final MessageDigest digest = DigestUtils.getSha256Digest();
+            HashUtils.addToHash(digestRecompInfo(exceptor)).andThen(HashUtils.addFileContentsToHash(baseSrg))
+                    .andThen(HashUtils.addFileContentsToHash(exceptor.fieldCSV))
+                    .andThen(HashUtils.addFileContentsToHash(exceptor.methodCSV)).accept(digest);
+            final Path cachedPath = getRfgCachePath().resolve("reobf-exceptor")
+                    .resolve(Hex.encodeHexString(digest.digest()) + ".srg");
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isRegularFile(cachedPath)) {
+                    return cachedPath;
+                }
+            }
+
+            final Path parentPath = cachedPath.getParent();
+            if (!Files.exists(parentPath)) {
+                Files.createDirectories(parentPath);
+            }
+            final Path tempPath = Files.createTempFile(parentPath, "rfg-reobf-", ".tmp");
+            exceptor.buildSrg(baseSrg, tempPath.toFile());
+            try (final FileLock ignored = lockCache(false)) {
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return cachedPath;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String digestRecompInfo(final ReobfExceptor exceptor) {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        HashUtils.addToHash(ReobfExceptor.RecompInfo.FORMAT_VERSION)
+                .andThen(HashUtils.addFileContentsToHash(exceptor.toReobfJar))
+                .andThen(HashUtils.addFileContentsToHash(exceptor.excConfig)).accept(digest);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @param key A digest of everything that affects the compiled classes, see {@link PatchedMcClassesCache}
+     * @return The jar of classes stored under the given key, or null if there is none.
+     */
+    public @Nullable Path findCompiledClasses(final String key) {
+        final Path cachedPath = getCompiledClassesPath(key);
+        try (final FileLock ignored = lockCache(true)) {
+            return Files.isRegularFile(cachedPath) ? cachedPath : null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stores the contents of a classes directory under the given key, for {@link #findCompiledClasses(String)}.
+     */
+    public void storeCompiledClasses(final String key, final File classesDir) {
+        final Path cachedPath = getCompiledClassesPath(key);
+        try {
+            final Path parentPath = cachedPath.getParent();
+            if (!Files.exists(parentPath)) {
+                Files.createDirectories(parentPath);
+            }
+            // Packed outside of the lock, only the final move needs it
+            final Path tempPath = Files.createTempFile(parentPath, "rfg-classes-", ".tmp");
+            try (final JarWriter out = new JarWriter(
+                    tempPath.toFile(),
+                    JarWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES,
+                    JarCompression.FAST)) {
+                final Path root = classesDir.toPath();
+                final List<Path> files;
+                try (final Stream<Path> walk = Files.walk(root)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    final String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    out.write(name, Files.readAllBytes(file));
+                }
+            }
+            try (final FileLock ignored = lockCache(false)) {
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path getCompiledClassesPath(final String key) {
+        return getRfgCachePath().resolve("compiled-classes").resolve(key + ".jar");
+    }
+
+    /**
+     * @param key A digest of a class and everything that affects its decompiled source, see {@link LazySources}
+     * @return The decompiled source stored under the given key, or null if there is none.
+     */
+    public @Nullable String findDecompiledClass(final String key) {
+        final Path cachedPath = getDecompiledClassPath(key);
+        try (final FileLock ignored = lockCache(true)) {
+            return Files.isRegularFile(cachedPath) ? new String(Files.readAllBytes(cachedPath), StandardCharsets.UTF_8)
+                    : null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stores the decompiled source of a class under the given key, for {@link #findDecompiledClass(String)}.
+     */
+    public void storeDecompiledClass(final String key, final String source) {
+        final Path cachedPath = getDecompiledClassPath(key);
+        try {
+            final Path parentPath = cachedPath.getParent();
+            if (!Files.exists(parentPath)) {
+                Files.createDirectories(parentPath);
+            }
+            final Path tempPath = Files.createTempFile(parentPath, "rfg-source-", ".tmp");
+            Files.write(tempPath, source.getBytes(StandardCharsets.UTF_8));
+            try (final FileLock ignored = lockCache(false)) {
+                Files.move(tempPath, cachedPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path getDecompiledClassPath(final String key) {
+        // Split by the first byte of the key, there are thousands of classes per Minecraft version
+        return getRfgCachePath().resolve("decompiled-classes").resolve(key.substring(0, 2)).resolve(key + ".java");
+    }
+
+    /**
+     * @param sourcesJar A decompiled sources jar
+     * @return A directory with the .java files of the jar extracted into {@code java/} and everything else into
+     *         {@code resources/}, shared by every project using the same jar. The files are read-only.
+     */
+    public Path accessExtractedSources(final File sourcesJar) {
+        try {
+            final String digest;
+            try (final InputStream is = Files.newInputStream(sourcesJar.toPath())) {
+                digest = DigestUtils.sha256Hex(is);
+            }
+            final Path extractedPath = getRfgCachePath().resolve("extracted-sources").resolve(digest);
+            try (final FileLock ignored = lockCache(true)) {
+                if (Files.isDirectory(extractedPath)) {
+                    return extractedPath;
+                }
+            }
+            // Extract without holding the lock, it is only needed to publish the finished directory
+            final Path parentPath = extractedPath.getParent();
+            if (!Files.exists(parentPath)) {
+                Files.createDirectories(parentPath);
+            }
+            final Path tempDestination = Files.createTempDirectory(parentPath, "rfg-src-");
+            try (final ZipFile jar = JarWriter.openArchive(sourcesJar)) {
+                for (ZipArchiveEntry entry : Collections.list(jar.getEntries())) {
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    final String subdir = entry.getName().endsWith(".java") ? "java" : "resources";
+                    // resolveIn protects against zip slip
+                    final Path target = entry.resolveIn(tempDestination.resolve(subdir));
+                    Files.createDirectories(target.getParent());
+                    try (final InputStream is = jar.getInputStream(entry)) {
+                        Files.copy(is, target);
+                    }
+                    // Projects see these files through links, edits would leak into every other project
+                    target.toFile().setReadOnly();
+                }
+            }
+            try (final FileLock ignored = lockCache(false)) {
+                if (!Files.isDirectory(extractedPath)) {
+                    Files.move(tempDestination, extractedPath);
+                    return extractedPath;
+                }
+            }
+            // Extracted by another build in the meantime
+            FileUtils.deleteQuietly(tempDestination.toFile());
+            return extractedPath;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
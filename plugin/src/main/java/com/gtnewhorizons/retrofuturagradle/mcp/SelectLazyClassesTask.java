@@ -0,0 +1,104 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.work.DisableCachingByDefault;
+
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+
+/**
+ * Adds the requested classes to the list of lazily decompiled classes, and writes the SRG classes of every listed class
+ * that isn't in the RFG cache yet into a jar for the decompilation chain.
+ */
+@DisableCachingByDefault(because = "Depends on the contents of the RFG cache")
+public abstract class SelectLazyClassesTask extends DefaultTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSrgJar();
+
+    @Input
+    @Option(
+            option = "classes",
+            description = "A Minecraft class to decompile, e.g. net.minecraft.client.Minecraft, can be repeated.")
+    public abstract ListProperty<String> getClassNames();
+
+    /**
+     * The persistent list of every class requested so far, one per line.
+     */
+    @Internal
+    public abstract RegularFileProperty getClassListFile();
+
+    @Input
+    public abstract Property<String> getWorkspaceDigest();
+
+    @Internal
+    public abstract Property<RfgCacheService> getCacheService();
+
+    /**
+     * The SRG classes to decompile, empty if all of the listed classes are already cached.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputJar();
+
+    public SelectLazyClassesTask() {
+        // The cache contents are not tracked as inputs
+        getOutputs().upToDateWhen(t -> false);
+    }
+
+    @TaskAction
+    public void selectClasses() throws IOException {
+        final File srgJar = getSrgJar().get().getAsFile();
+        final File classListFile = getClassListFile().get().getAsFile();
+        final Set<String> classes = LazySources.readClassList(classListFile);
+        for (String className : getClassNames().get()) {
+            classes.add(LazySources.toTopLevelClass(className));
+        }
+
+        final Map<String, String> keys = LazySources
+                .computeClassKeys(srgJar, getWorkspaceDigest().get(), classes);
+        for (String className : classes) {
+            if (!keys.containsKey(className)) {
+                getLogger().warn("Class {} is not part of the Minecraft jar, skipping it", className.replace('/', '.'));
+            }
+        }
+        classes.retainAll(keys.keySet());
+        LazySources.writeClassList(classListFile, classes);
+
+        final RfgCacheService cacheService = getCacheService().get();
+        classes.removeIf(className -> cacheService.findDecompiledClass(keys.get(className)) != null);
+        getLogger().lifecycle("{} of {} requested classes need decompiling", classes.size(), keys.size());
+
+        final File outputJar = getOutputJar().get().getAsFile();
+        FileUtils.deleteQuietly(outputJar);
+        try (final ZipFile srgZip = JarWriter.openArchive(srgJar);
+                final JarWriter out = new JarWriter(outputJar, JarCompression.FAST)) {
+            for (ZipArchiveEntry entry : JarWriter.sortedEntries(srgZip)) {
+                final String name = entry.getName();
+                if (!entry.isDirectory() && name.endsWith(".class")
+                        && classes.contains(LazySources.toTopLevelClass(name))) {
+                    out.copyRaw(srgZip, entry);
+                }
+            }
+        }
+    }
+}
@@ -145,6 +145,8 @@ public class SharedMCPTasks<McExtType extends IMinecraftyExtension> {
                     task.doFirst(new MkdirAction(forgeSrgLocation));
                     task.getCacheService().set(RfgCacheService.lazyAccess(project.getGradle()));
                     task.usesService(RfgCacheService.lazyAccess(project.getGradle()));
+                    task.getMappingsService().set(MappingsService.lazyAccess(project.getGradle()));
+                    task.usesService(MappingsService.lazyAccess(project.getGradle()));
                 });
 
         // Set up dependencies across the cache-writing tasks to suppress Gradle errors about this.
@@ -0,0 +1,573 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_ENUM;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_NATIVE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.collections4.iterators.EnumerationIterator;
+import org.apache.commons.collections4.iterators.IteratorIterable;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.AccessMap;
+import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.JarMapping;
+import com.gtnewhorizons.retrofuturagradle.fg12shadow.net.md_5.specialsource.JarRemapper;
+import com.gtnewhorizons.retrofuturagradle.json.MCInjectorStruct;
+import com.gtnewhorizons.retrofuturagradle.util.JarCompression;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * Deobfuscates a jar the same way as the SpecialSource 1.7 -> MCInjector 3.2 -> cleanup chain of FG1.2, but reads and
+ * writes every class only once: the SRG renaming, access transformers, exceptor and synthetic stripping are chained ASM
+ * visitors. Classes are processed in parallel and written to the output jar sorted by name, without the META-INF
+ * entries.
+ * <p>
+ * Name lookups and access changes are delegated to the SpecialSource {@link JarMapping} and {@link AccessMap}, so they
+ * follow the exact same rules as the old chain.
+ */
+public final class SinglePassDeobfuscator {
+
+    private static final Logger LOGGER = Logging.getLogger("RFG Deobfuscation");
+
+    private final JarMapping mapping;
+    private final JarRemapper legacyRemapper;
+    private final AccessMap accessMap;
+    private final Properties exceptorConfig;
+    private final @Nullable Map<String, MCInjectorStruct> exceptorJson;
+    private final boolean applyMarkers;
+    private final boolean stripSynthetics;
+
+    private final SrgRemapper srgRemapper = new SrgRemapper();
+    // obf class name -> superclass and interfaces, for the inheritance-aware member lookups
+    private final Map<String, Set<String>> classParents = new HashMap<>();
+    // srg method key -> generated constructor id, for constructors without parameter names in the exceptor config
+    private final Map<String, String> constructorIds = new HashMap<>();
+
+    /**
+     * @param mapping         The notch->srg mappings, the fallback inheritance provider is replaced when processing
+     * @param accessMap       The access transformers, in SRG names
+     * @param exceptorConfig  The contents of the .exc file
+     * @param exceptorJson    The inner class and enclosing method data, in SRG names
+     * @param applyMarkers    Whether to add the {@code __OBFID} class markers from the exceptor config
+     * @param stripSynthetics Whether to remove the synthetic flag from members of non-enum classes
+     */
+    public SinglePassDeobfuscator(JarMapping mapping, AccessMap accessMap, Properties exceptorConfig,
+            @Nullable Map<String, MCInjectorStruct> exceptorJson, boolean applyMarkers, boolean stripSynthetics) {
+        this.mapping = mapping;
+        this.legacyRemapper = new JarRemapper(null, mapping, null);
+        this.accessMap = accessMap;
+        this.exceptorConfig = exceptorConfig;
+        this.exceptorJson = exceptorJson;
+        this.applyMarkers = applyMarkers;
+        this.stripSynthetics = stripSynthetics;
+    }
+
+    /**
+     * Deobfuscates all classes of the input jar, and copies the other entries over.
+     *
+     * @return The number of processed classes
+     */
+    public int process(File inputJar, File outputJar, JarCompression compression) throws IOException {
+        final List<JarEntryData> entries = new ArrayList<>();
+        try (final ZipFile inZip = new ZipFile(inputJar)) {
+            for (ZipEntry entry : new IteratorIterable<>(new EnumerationIterator<>(inZip.entries()))) {
+                if (entry.getName().contains("META-INF")) continue;
+                if (entry.isDirectory()) {
+                    entries.add(new JarEntryData(entry.getName(), null, null));
+                } else {
+                    final byte[] contents = Utilities.readZipEntry(inZip, entry);
+                    final ClassReader reader = entry.getName().endsWith(".class") ? new ClassReader(contents) : null;
+                    entries.add(new JarEntryData(entry.getName(), contents, reader));
+                }
+            }
+        }
+
+        int classCount = 0;
+        for (JarEntryData entry : entries) {
+            if (entry.reader != null) {
+                // Interfaces first, like the JarProvider this replaces
+                final Set<String> parents = new LinkedHashSet<>(Arrays.asList(entry.reader.getInterfaces()));
+                if (entry.reader.getSuperName() != null) {
+                    parents.add(entry.reader.getSuperName());
+                }
+                classParents.put(entry.reader.getClassName(), parents);
+                classCount++;
+            }
+        }
+        mapping.setFallbackInheritanceProvider(classParents::get);
+        assignConstructorIds(entries);
+
+        final List<JarEntryData> processed = entries.parallelStream().map(this::processEntry)
+                .sorted(Comparator.comparing(JarEntryData::getName)).collect(Collectors.toList());
+
+        try (final JarWriter out = new JarWriter(
+                outputJar,
+                JarWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES,
+                compression)) {
+            for (JarEntryData entry : processed) {
+                if (entry.contents == null) {
+                    out.writeDirectory(entry.name);
+                } else {
+                    out.write(entry.name, entry.contents);
+                }
+            }
+        }
+        return classCount;
+    }
+
+    private JarEntryData processEntry(JarEntryData entry) {
+        if (entry.reader == null) {
+            return entry;
+        }
+        try {
+            final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            ClassVisitor visitor = writer;
+            if (stripSynthetics) {
+                visitor = new SyntheticStripper(visitor);
+            }
+            visitor = new Exceptor(visitor);
+            visitor = new AccessTransformer(visitor);
+            visitor = new DeclarationRemapper(visitor);
+            entry.reader.accept(visitor, 0);
+            final String newName = srgRemapper.map(entry.reader.getClassName()) + ".class";
+            return new JarEntryData(newName, writer.toByteArray(), null);
+        } catch (Exception e) {
+            throw new RuntimeException("Couldn't deobfuscate class " + entry.name, e);
+        }
+    }
+
+    /**
+     * MCInjector numbers the constructors missing from the exceptor config in the order it encounters them, so they are
+     * collected in jar and class file order before the classes are processed in parallel to get the same parameter
+     * names.
+     */
+    private void assignConstructorIds(List<JarEntryData> entries) {
+        int nextId = 0;
+        final String maxIndex = exceptorConfig.getProperty("max_constructor_index");
+        if (maxIndex != null) {
+            nextId = Integer.parseInt(maxIndex.trim()) + 1;
+        }
+        for (JarEntryData entry : entries) {
+            if (entry.reader == null) {
+                continue;
+            }
+            for (String key : findUnnamedConstructors(entry.reader)) {
+                constructorIds.put(key, "i" + nextId++);
+            }
+        }
+    }
+
+    private List<String> findUnnamedConstructors(ClassReader reader) {
+        final String className = srgRemapper.map(reader.getClassName());
+        final List<String> found = new ArrayList<>();
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                    String[] exceptions) {
+                if (name.equals("<init>") && (access & (ACC_ABSTRACT | ACC_NATIVE)) == 0
+                        && Type.getArgumentTypes(descriptor).length > 0) {
+                    final String key = className + "." + name + srgRemapper.mapMethodDesc(descriptor);
+                    if (getConfiguredParams(exceptorConfig.getProperty(key)).isEmpty()) {
+                        found.add(key);
+                    }
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return found;
+    }
+
+    /** The exception list of an exceptor config entry, {@code exceptions|params} */
+    private static List<String> getConfiguredExceptions(@Nullable String entry) {
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        final int split = entry.indexOf('|');
+        return splitList(split == -1 ? entry : entry.substring(0, split));
+    }
+
+    /** The parameter name list of an exceptor config entry, {@code exceptions|params} */
+    private static List<String> getConfiguredParams(@Nullable String entry) {
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        final int split = entry.indexOf('|');
+        return split == -1 ? Collections.emptyList() : splitList(entry.substring(split + 1));
+    }
+
+    private static List<String> splitList(String list) {
+        final List<String> items = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    private static final class JarEntryData {
+
+        final String name;
+        final byte[] contents;
+        final ClassReader reader;
+
+        JarEntryData(String name, byte[] contents, ClassReader reader) {
+            this.name = name;
+            this.contents = contents;
+            this.reader = reader;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Looks names up in the SpecialSource mappings, the results are cached because the mappings are not thread-safe
+     * (the inheritance lookups fill an internal cache).
+     */
+    private final class SrgRemapper extends Remapper {
+
+        private final Map<String, String> classNames = new ConcurrentHashMap<>();
+        private final Map<String, String> fieldNames = new ConcurrentHashMap<>();
+        private final Map<String, String> methodNames = new ConcurrentHashMap<>();
+
+        @Override
+        public String map(String internalName) {
+            return classNames.computeIfAbsent(internalName, n -> {
+                synchronized (mapping) {
+                    return legacyRemapper.map(n);
+                }
+            });
+        }
+
+        @Override
+        public String mapFieldName(String owner, String name, String descriptor) {
+            return fieldNames
+                    .computeIfAbsent(owner + "/" + name, k -> mapDeclaredFieldName(owner, name, descriptor, -1));
+        }
+
+        @Override
+        public String mapMethodName(String owner, String name, String descriptor) {
+            return methodNames.computeIfAbsent(
+                    owner + "/" + name + " " + descriptor,
+                    k -> mapDeclaredMethodName(owner, name, descriptor, -1));
+        }
+
+        @Override
+        public String mapInnerClassName(String name, String ownerName, String innerName) {
+            // SpecialSource 1.7 keeps the simple names of inner classes as-is
+            return innerName;
+        }
+
+        /** Private and static members only use their own mapping, without looking at the parent classes */
+        String mapDeclaredFieldName(String owner, String name, String descriptor, int access) {
+            synchronized (mapping) {
+                return legacyRemapper.mapFieldName(owner, name, descriptor, access);
+            }
+        }
+
+        String mapDeclaredMethodName(String owner, String name, String descriptor, int access) {
+            synchronized (mapping) {
+                return legacyRemapper.mapMethodName(owner, name, descriptor, access);
+            }
+        }
+    }
+
+    /** Passes the access flags of declared members to the SRG lookups, like the SpecialSource class adapter */
+    private final class DeclarationRemapper extends ClassRemapper {
+
+        DeclarationRemapper(ClassVisitor classVisitor) {
+            super(Opcodes.ASM9, classVisitor, srgRemapper);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            final FieldVisitor fieldVisitor = cv.visitField(
+                    access,
+                    srgRemapper.mapDeclaredFieldName(className, name, descriptor, access),
+                    remapper.mapDesc(descriptor),
+                    remapper.mapSignature(signature, true),
+                    (value == null) ? null : remapper.mapValue(value));
+            return (fieldVisitor == null) ? null : createFieldRemapper(fieldVisitor);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                String[] exceptions) {
+            final MethodVisitor methodVisitor = cv.visitMethod(
+                    access,
+                    srgRemapper.mapDeclaredMethodName(className, name, descriptor, access),
+                    remapper.mapMethodDesc(descriptor),
+                    remapper.mapSignature(signature, false),
+                    (exceptions == null) ? null : remapper.mapTypes(exceptions));
+            return (methodVisitor == null) ? null : createMethodRemapper(methodVisitor);
+        }
+    }
+
+    /** Applies the access transformers to the already renamed class */
+    private final class AccessTransformer extends ClassVisitor {
+
+        private String className;
+
+        AccessTransformer(ClassVisitor classVisitor) {
+            super(Opcodes.ASM9, classVisitor);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            className = name;
+            synchronized (accessMap) {
+                access = accessMap.applyClassAccess(name, access);
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            synchronized (accessMap) {
+                access = accessMap.applyFieldAccess(className, name, access);
+            }
+            return super.visitField(access, name, descriptor, signature, value);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                String[] exceptions) {
+            synchronized (accessMap) {
+                access = accessMap.applyMethodAccess(className, name, descriptor, access);
+            }
+            return super.visitMethod(access, name, descriptor, signature, exceptions);
+        }
+    }
+
+    /**
+     * Applies the MCInjector 3.2 changes: exceptions and parameter names from the exceptor config, inner class and
+     * enclosing method attributes from the exceptor json, and the {@code __OBFID} class markers.
+     */
+    private final class Exceptor extends ClassVisitor {
+
+        private String className;
+        private MCInjectorStruct struct;
+
+        Exceptor(ClassVisitor classVisitor) {
+            super(Opcodes.ASM9, classVisitor);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            className = name;
+            struct = (exceptorJson == null) ? null : exceptorJson.get(name);
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public void visitOuterClass(String owner, String name, String descriptor) {
+            if (struct != null && struct.enclosingMethod != null) {
+                return;
+            }
+            super.visitOuterClass(owner, name, descriptor);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                String[] exceptions) {
+            final String key = className + "." + name + descriptor;
+            final String entry = exceptorConfig.getProperty(key);
+            final List<String> configuredExceptions = getConfiguredExceptions(entry);
+            if (!configuredExceptions.isEmpty()) {
+                final Set<String> merged = new LinkedHashSet<>();
+                if (exceptions != null) {
+                    merged.addAll(Arrays.asList(exceptions));
+                }
+                merged.addAll(configuredExceptions);
+                exceptions = merged.toArray(new String[0]);
+            }
+            final MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if (methodVisitor == null || (access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+                return methodVisitor;
+            }
+
+            final List<Type> types = new ArrayList<>();
+            final List<String> names = new ArrayList<>();
+            if ((access & ACC_STATIC) == 0) {
+                types.add(Type.getObjectType(className));
+                names.add("this");
+            }
+            types.addAll(Arrays.asList(Type.getArgumentTypes(descriptor)));
+            if (types.isEmpty()) {
+                return methodVisitor;
+            }
+            final List<String> configuredParams = getConfiguredParams(entry);
+            if (!configuredParams.isEmpty()) {
+                names.addAll(configuredParams);
+            } else {
+                final String id = getParamId(key, name);
+                for (int x = names.size(), y = x; x < types.size(); x++) {
+                    names.add(String.format("p_%s_%d_", id, y));
+                    y += types.get(x).getSize();
+                }
+            }
+            if (names.size() != types.size()) {
+                LOGGER.warn("Parameter count mismatch for {}: {}", key, configuredParams);
+                return methodVisitor;
+            }
+            return new ParameterNamer(methodVisitor, types, names);
+        }
+
+        private String getParamId(String key, String name) {
+            if (name.equals("<init>")) {
+                final String id = constructorIds.get(key);
+                return (id == null) ? "i0" : id;
+            }
+            if (name.startsWith("func_")) {
+                final int idEnd = name.indexOf('_', 5);
+                if (idEnd > 5) {
+                    return name.substring(5, idEnd);
+                }
+            }
+            return name;
+        }
+
+        @Override
+        public void visitEnd() {
+            if (applyMarkers) {
+                final String marker = exceptorConfig.getProperty(className);
+                if (marker != null) {
+                    final FieldVisitor fv = super.visitField(
+                            ACC_PRIVATE | ACC_STATIC | ACC_FINAL,
+                            "__OBFID",
+                            "Ljava/lang/String;",
+                            null,
+                            marker);
+                    if (fv != null) {
+                        fv.visitEnd();
+                    }
+                }
+            }
+            if (struct != null) {
+                if (struct.enclosingMethod != null) {
+                    final MCInjectorStruct.EnclosingMethod em = struct.enclosingMethod;
+                    super.visitOuterClass(em.owner, em.name, em.desc);
+                }
+                if (struct.innerClasses != null) {
+                    for (MCInjectorStruct.InnerClass inner : struct.innerClasses) {
+                        super.visitInnerClass(
+                                inner.inner_class,
+                                inner.outer_class,
+                                inner.inner_name,
+                                inner.getAccess());
+                    }
+                }
+            }
+            super.visitEnd();
+        }
+    }
+
+    /** Replaces the local variable table with the parameter names, spanning the whole method */
+    private static final class ParameterNamer extends MethodVisitor {
+
+        private final List<Type> types;
+        private final List<String> names;
+        private final Label start = new Label();
+        private final Label end = new Label();
+
+        ParameterNamer(MethodVisitor methodVisitor, List<Type> types, List<String> names) {
+            super(Opcodes.ASM9, methodVisitor);
+            this.types = types;
+            this.names = names;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            super.visitLabel(start);
+        }
+
+        @Override
+        public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end,
+                int index) {
+            // replaced by the parameter names
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            super.visitLabel(end);
+            for (int x = 0, y = 0; x < names.size(); x++) {
+                super.visitLocalVariable(names.get(x), types.get(x).getDescriptor(), null, start, end, y);
+                y += types.get(x).getSize();
+            }
+            super.visitMaxs(maxStack, maxLocals);
+        }
+    }
+
+    /** Removes the synthetic flag from the fields and methods of non-enum classes, to make them decompile */
+    private static final class SyntheticStripper extends ClassVisitor {
+
+        private boolean stripping;
+
+        SyntheticStripper(ClassVisitor classVisitor) {
+            super(Opcodes.ASM9, classVisitor);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            stripping = (access & ACC_ENUM) == 0 && !"java/lang/Enum".equals(superName)
+                    && (access & ACC_SYNTHETIC) == 0;
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            return super.visitField(stripping ? access & ~ACC_SYNTHETIC : access, name, descriptor, signature, value);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                String[] exceptions) {
+            return super.visitMethod(
+                    stripping ? access & ~ACC_SYNTHETIC : access,
+                    name,
+                    descriptor,
+                    signature,
+                    exceptions);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
@@ -19,6 +20,7 @@ import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.options.Option;
 
+import com.gtnewhorizons.retrofuturagradle.mcp.MappingsService;
 import com.gtnewhorizons.retrofuturagradle.mcp.RemapSourceJarTask;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
 
@@ -62,6 +64,9 @@ public abstract class DeobfuscateFileTaskBase extends DefaultTask {
     @Option(option = "output", description = "Where to save the deobfuscated version")
     public abstract RegularFileProperty getOutputFile();
 
+    @Internal
+    public abstract Property<MappingsService> getMappingsService();
+
     @Inject
     protected abstract ObjectFactory getObjectFactory();
 
@@ -78,6 +83,9 @@ public abstract class DeobfuscateFileTaskBase extends DefaultTask {
             }
             return getObjectFactory().fileProperty().fileValue(new File(path)).get();
         }));
+        final Provider<MappingsService> mappingsService = MappingsService.lazyAccess(getProject().getGradle());
+        getMappingsService().convention(mappingsService);
+        usesService(mappingsService);
     }
 
     public void configureFromDeobfMcTask(RemapSourceJarTask mcTask) {
@@ -91,11 +99,19 @@ public abstract class DeobfuscateFileTaskBase extends DefaultTask {
 
     @Internal
     public Utilities.MappingsSet getMappings() {
-        return Utilities.loadMappingCsvs(
+        final MappingsService mappingsService = getMappingsService().getOrNull();
+        if (mappingsService == null) {
+            return Utilities.loadMappingCsvs(
+                    getMethodsCsv().getAsFile().get(),
+                    getFieldsCsv().getAsFile().get(),
+                    getParamsCsv().getAsFile().getOrNull(),
+                    getExtraParamsCsvs().getFiles(),
+                    getGenericFieldsCsvName().getOrNull());
+        }
+        return mappingsService.getCsvMappings(
                 getMethodsCsv().getAsFile().get(),
                 getFieldsCsv().getAsFile().get(),
                 getParamsCsv().getAsFile().getOrNull(),
-                getExtraParamsCsvs().getFiles(),
-                getGenericFieldsCsvName().getOrNull());
+                getExtraParamsCsvs().getFiles()).toMappingsSet(getGenericFieldsCsvName().getOrNull());
     }
 }
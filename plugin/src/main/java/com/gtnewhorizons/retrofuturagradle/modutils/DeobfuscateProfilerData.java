@@ -1,9 +1,13 @@
 package com.gtnewhorizons.retrofuturagradle.modutils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.tasks.TaskAction;
 
+import com.gtnewhorizons.retrofuturagradle.util.SrgNameScanner;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
 
 public abstract class DeobfuscateProfilerData extends DeobfuscateFileTaskBase {
@@ -14,5 +18,12 @@ public abstract class DeobfuscateProfilerData extends DeobfuscateFileTaskBase {
         final File outputFile = getOutputFile().getAsFile().get();
         final Utilities.MappingsSet mappings = getMappings();
 
+        try {
+            final String data = FileUtils.readFileToString(inputFile, StandardCharsets.UTF_8);
+            final String deobfData = SrgNameScanner.remap(data, mappings.toMappingTable());
+            FileUtils.writeStringToFile(outputFile, deobfData, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
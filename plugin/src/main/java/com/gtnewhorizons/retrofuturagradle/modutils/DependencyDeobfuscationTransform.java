@@ -1,11 +1,9 @@
 package com.gtnewhorizons.retrofuturagradle.modutils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,15 +12,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.artifacts.transform.CacheableTransform;
 import org.gradle.api.artifacts.transform.InputArtifact;
@@ -48,6 +44,8 @@ import org.gradle.api.tasks.PathSensitivity;
 
 import com.google.common.io.Files;
 import com.gtnewhorizons.retrofuturagradle.mcp.RfgCacheService;
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+import com.gtnewhorizons.retrofuturagradle.util.SrgMappingTable;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
 
 @CacheableTransform
@@ -143,55 +141,55 @@ public abstract class DependencyDeobfuscationTransform
         final File fieldsCsv = parameters.getFieldsCsv().get().getAsFile();
         final File methodsCsv = parameters.getMethodsCsv().get().getAsFile();
 
-        final Utilities.MappingsSet mappings = Utilities.loadMappingCsvs(methodsCsv, fieldsCsv, null, null, null);
-        final Map<String, String> combined = mappings.getCombinedMappings();
+        // Read through the shared snapshot when possible, this runs once per deobfuscated artifact
+        final RfgCacheService cacheService = parameters.getMappingService().getOrNull();
+        final SrgMappingTable mappingTable = (cacheService != null)
+                ? cacheService.accessMappingSnapshot(methodsCsv, fieldsCsv, null, null).toMappingTable()
+                : Utilities.loadMappingCsvs(methodsCsv, fieldsCsv, null, null, null).toMappingTable();
 
         if (outFile.isFile()) {
             FileUtils.delete(outFile);
         }
 
-        try (final InputStream is = FileUtils.openInputStream(inputLocation);
-                final BufferedInputStream bis = new BufferedInputStream(is);
-                final JarInputStream jis = new JarInputStream(bis, false);
-                final OutputStream os = FileUtils.openOutputStream(outFileTemp, false);
-                final BufferedOutputStream bos = new BufferedOutputStream(os);
-                final JarOutputStream jos = makeTransformerJarOutputStream(jis, bos)) {
-            JarEntry entry;
-            while ((entry = jis.getNextJarEntry()) != null) {
-                if (StringUtils.endsWithIgnoreCase(entry.getName(), ".dsa")
+        try (final ZipFile inJar = JarWriter.openArchive(inputLocation);
+                final JarWriter out = new JarWriter(outFileTemp)) {
+            // The manifest goes first, so that JarInputStream readers can find it
+            final ZipArchiveEntry manifestEntry = inJar.getEntry(JarFile.MANIFEST_NAME);
+            if (manifestEntry != null) {
+                out.write(JarFile.MANIFEST_NAME, readTransformedManifest(inJar, manifestEntry));
+            }
+            for (ZipArchiveEntry entry : Collections.list(inJar.getEntries())) {
+                if (entry == manifestEntry || StringUtils.endsWithIgnoreCase(entry.getName(), ".dsa")
                         || StringUtils.endsWithIgnoreCase(entry.getName(), ".rsa")
                         || StringUtils.endsWithIgnoreCase(entry.getName(), ".sf")
                         || StringUtils.containsIgnoreCase(entry.getName(), "meta-inf/sig-")) {
                     continue;
                 }
-                jos.putNextEntry(new JarEntry(entry.getName()));
                 if (StringUtils.endsWithIgnoreCase(entry.getName(), ".class")) {
-                    byte[] data = IOUtils.toByteArray(jis);
-                    IOUtils.write(Utilities.simpleRemapClass(data, combined), jos);
+                    byte[] data = JarWriter.readEntry(inJar, entry);
+                    out.write(entry.getName(), Utilities.simpleRemapClass(data, mappingTable));
                 } else if (StringUtils.endsWith(entry.getName(), "META-INF/MANIFEST.MF")) {
-                    // This if will only trigger if the manifest is not one of the first 2 jar entries
-                    Manifest mf = new Manifest(CloseShieldInputStream.wrap(jis));
-                    transformManifest(mf);
-                    mf.write(jos);
+                    // Manifests of shaded jars
+                    out.write(entry.getName(), readTransformedManifest(inJar, entry));
                 } else {
-                    IOUtils.copy(jis, jos);
+                    // Unchanged resources are copied without recompressing them
+                    out.copyRaw(inJar, entry);
                 }
-                jos.closeEntry();
             }
         }
 
         Files.move(outFileTemp, outFile);
     }
 
-    private static JarOutputStream makeTransformerJarOutputStream(JarInputStream jis, OutputStream os)
-            throws IOException {
-        if (jis.getManifest() != null) {
-            final Manifest mf = jis.getManifest();
-            transformManifest(mf);
-            return new JarOutputStream(os, mf);
-        } else {
-            return new JarOutputStream(os);
+    private static byte[] readTransformedManifest(ZipFile jar, ZipArchiveEntry entry) throws IOException {
+        final Manifest mf;
+        try (final InputStream is = jar.getInputStream(entry)) {
+            mf = new Manifest(is);
         }
+        transformManifest(mf);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        mf.write(bytes);
+        return bytes.toByteArray();
     }
 
     private static void transformManifest(Manifest mf) {
@@ -12,7 +12,6 @@ import javax.inject.Inject;
 
 import net.fabricmc.mappingio.adapter.MappingNsRenamer;
 import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
-import net.fabricmc.mappingio.format.srg.SrgFileReader;
 import net.fabricmc.mappingio.format.srg.SrgFileWriter;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import net.fabricmc.mappingio.tree.VisitableMappingTree;
@@ -29,10 +28,13 @@ import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.PathSensitive;
@@ -40,6 +42,7 @@ import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 
+import com.gtnewhorizons.retrofuturagradle.mcp.MappingsService;
 import com.gtnewhorizons.retrofuturagradle.util.Utilities;
 
 public abstract class MigrateMappingsTask extends DefaultTask {
@@ -79,10 +82,16 @@ public abstract class MigrateMappingsTask extends DefaultTask {
     @Classpath
     public abstract ConfigurableFileCollection getCompileClasspath();
 
+    @Internal
+    public abstract Property<MappingsService> getMappingsService();
+
     @Inject
     public MigrateMappingsTask() {
         getInputDir().convention(getProject().getLayout().getProjectDirectory().dir("src/main/java"));
         getOutputDir().convention(getProject().getLayout().getProjectDirectory().dir("src/main/java"));
+        final Provider<MappingsService> mappingsService = MappingsService.lazyAccess(getProject().getGradle());
+        getMappingsService().convention(mappingsService);
+        usesService(mappingsService);
     }
 
     @TaskAction
@@ -96,20 +105,24 @@ public abstract class MigrateMappingsTask extends DefaultTask {
         File target = getMcpDir().get().getAsFile();
         File srg = getSourceSrg().getAsFile().get();
 
-        MemoryMappingTree notchSrg = new MemoryMappingTree();
-        SrgFileReader.read(Files.newBufferedReader(srg.toPath()), "official", "srg", notchSrg);
+        final MappingsService mappingsService = getMappingsService().get();
+        MemoryMappingTree notchSrg = mappingsService.getSrgTree(srg);
 
         MemoryMappingTree sourceSrgMcp = new MemoryMappingTree();
-        Utilities.loadSrgMcpMappings(sourceSrgMcp, notchSrg, sourceMethods, sourceFields, null, null);
+        Utilities.loadSrgMcpMappings(
+                sourceSrgMcp,
+                notchSrg,
+                mappingsService.getCsvMappings(sourceMethods, sourceFields, null, null));
 
         MemoryMappingTree targetSrgMcp = new MemoryMappingTree();
         Utilities.loadSrgMcpMappings(
                 targetSrgMcp,
                 notchSrg,
-                new File(target, "methods.csv"),
-                new File(target, "fields.csv"),
-                null,
-                null);
+                mappingsService.getCsvMappings(
+                        new File(target, "methods.csv"),
+                        new File(target, "fields.csv"),
+                        null,
+                        null));
 
         MemoryMappingTree joinedSrgMcp = new MemoryMappingTree();
         joinedSrgMcp.setSrcNamespace("srg");
@@ -18,6 +18,7 @@ import com.gtnewhorizons.retrofuturagradle.mcp.CleanupDecompiledJarTask;
 import com.gtnewhorizons.retrofuturagradle.mcp.DecompileTask;
 import com.gtnewhorizons.retrofuturagradle.mcp.DeobfuscateTask;
 import com.gtnewhorizons.retrofuturagradle.mcp.GenSrgMappingsTask;
+import com.gtnewhorizons.retrofuturagradle.mcp.MappingsService;
 import com.gtnewhorizons.retrofuturagradle.mcp.MergeSidedJarsTask;
 import com.gtnewhorizons.retrofuturagradle.mcp.PatchSourcesTask;
 import com.gtnewhorizons.retrofuturagradle.mcp.RemapSourceJarTask;
@@ -34,6 +35,7 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
 
         project.afterEvaluate(this::afterEvaluate);
         final Provider<RfgCacheService> rfgCacheService = RfgCacheService.lazyAccess(project.getGradle());
+        final Provider<MappingsService> mappingsService = MappingsService.lazyAccess(project.getGradle());
 
         final File mergedVanillaJarLocation = FileUtils
                 .getFile(project.getBuildDir(), RFG_DIR, "vanilla_merged_minecraft.jar");
@@ -63,6 +65,8 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
                     task.getIsApplyingMarkers().set(true);
                     // Configured in afterEvaluate()
                     task.getAccessTransformerFiles().setFrom(mcExt.getAccessTransformers());
+                    task.getMappingsService().set(mappingsService);
+                    task.usesService(mappingsService);
                 });
 
         final File decompiledSrgLocation = FileUtils
@@ -77,6 +81,7 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
                     task.getOutputJar().set(rawDecompiledSrgLocation);
                     task.getCacheDir().set(Utilities.getCacheDir(project, "fernflower-cache"));
                     task.getFernflower().set(fernflowerLocation);
+                    task.getFernflowerArguments().set(mcExt.getFernflowerArguments());
                     task.getCacheService().set(rfgCacheService);
                     task.usesService(rfgCacheService);
                 });
@@ -88,6 +93,8 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
                     task.getOutputJar().set(decompiledSrgLocation);
                     task.getPatches().set(userdevDir("conf/minecraft_ff"));
                     task.getAstyleConfig().set(userdevFile("conf/astyle.cfg"));
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
                 });
 
         final File patchedSourcesLocation = FileUtils
@@ -100,6 +107,8 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
                     task.getOutputJar().set(patchedSourcesLocation);
                     // BS: Patches added by the buildscript
                     task.getMaxFuzziness().set(2);
+                    task.getCacheService().set(rfgCacheService);
+                    task.usesService(rfgCacheService);
                 });
 
         final File remappedUnpatchedSourcesLocation = FileUtils
@@ -114,6 +123,8 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
                     task.getMethodCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getMethodsCsv));
                     // No params - incompatible with the old patches
                     task.getAddJavadocs().set(false);
+                    task.getMappingsService().set(mappingsService);
+                    task.usesService(mappingsService);
                 });
 
         final File remappedPatchedSourcesLocation = FileUtils
@@ -128,6 +139,8 @@ public class PatchDevTasks extends SharedMCPTasks<RfgPatchdevExtension> {
                     task.getMethodCsv().set(taskGenerateForgeSrgMappings.flatMap(GenSrgMappingsTask::getMethodsCsv));
                     // No params - incompatible with the old patches
                     task.getAddJavadocs().set(false);
+                    task.getMappingsService().set(mappingsService);
+                    task.usesService(mappingsService);
                 });
 
         final JavaPluginExtension javaExt = project.getExtensions().getByType(JavaPluginExtension.class);
@@ -0,0 +1,319 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.iterators.EnumerationIterator;
+import org.apache.commons.collections4.iterators.IteratorIterable;
+import org.apache.commons.io.IOUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The class headers of a jar or class directory: the super class, interfaces and member signatures of every class. Used
+ * as a SpecialSource inheritance provider, so remapping doesn't need to load classes or scan the jar for every lookup,
+ * and stored in the RFG cache keyed by the jar digest so each jar is only ever read once.
+ */
+public final class ClassHierarchyIndex {
+
+    /** Bump whenever the serialized format or what gets recorded changes */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x52464748; // RFGH
+
+    private final Map<String, ClassInfo> classes;
+
+    private ClassHierarchyIndex(Map<String, ClassInfo> classes) {
+        this.classes = Collections.unmodifiableMap(classes);
+    }
+
+    /**
+     * @return The internal names of all indexed classes.
+     */
+    public Set<String> getClassNames() {
+        return classes.keySet();
+    }
+
+    /**
+     * @return The header of the given class, or null if it is not part of the indexed jar.
+     */
+    public @Nullable ClassInfo getClass(String className) {
+        return classes.get(className);
+    }
+
+    /**
+     * Matches the signature of SpecialSource's InheritanceProvider, so that {@code index::getParents} can be used as
+     * one.
+     *
+     * @return The interfaces followed by the super class of the given class, or null if it is not part of the indexed
+     *         jar.
+     */
+    public @Nullable Set<String> getParents(String className) {
+        final ClassInfo info = classes.get(className);
+        return info == null ? null : info.parents;
+    }
+
+    /**
+     * Reads the class headers of every class in the given jar or directory, skipping unparseable classes.
+     */
+    public static ClassHierarchyIndex build(File jarOrDir) throws IOException {
+        final Map<String, ClassInfo> classes = new HashMap<>();
+        if (jarOrDir.isDirectory()) {
+            final List<Path> classFiles;
+            try (final Stream<Path> files = Files.walk(jarOrDir.toPath())) {
+                classFiles = files.filter(p -> p.toString().endsWith(".class") && Files.isRegularFile(p))
+                        .collect(Collectors.toList());
+            }
+            for (Path classFile : classFiles) {
+                indexClass(classes, Files.readAllBytes(classFile));
+            }
+        } else if (jarOrDir.isFile()) {
+            try (final ZipFile zf = new ZipFile(jarOrDir)) {
+                for (ZipEntry entry : new IteratorIterable<>(new EnumerationIterator<>(zf.entries()))) {
+                    if (entry.isDirectory() || !entry.getName().endsWith(".class")
+                            || entry.getName().startsWith("META-INF/")) {
+                        continue;
+                    }
+                    try (final InputStream is = zf.getInputStream(entry)) {
+                        indexClass(classes, IOUtils.toByteArray(is));
+                    }
+                }
+            }
+        }
+        return new ClassHierarchyIndex(classes);
+    }
+
+    private static void indexClass(Map<String, ClassInfo> classes, byte[] classBytes) {
+        final ClassReader reader;
+        try {
+            reader = new ClassReader(classBytes);
+        } catch (RuntimeException e) {
+            // Not a valid class, e.g. an obfuscator leftover
+            return;
+        }
+        final HeaderVisitor visitor = new HeaderVisitor();
+        try {
+            reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        } catch (RuntimeException e) {
+            return;
+        }
+        // Keep the first copy of duplicated classes, like the JVM would
+        classes.putIfAbsent(visitor.name, visitor.toClassInfo());
+    }
+
+    /**
+     * @return A digest of the given jar's contents and the index format, to key the cached index with.
+     */
+    public static String digestJar(File jar) throws IOException {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        DigestUtils.updateDigest(digest, jar);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    public void write(File target) throws IOException {
+        // Sorted so that the same jar always produces the same index
+        final Map<String, ClassInfo> sortedClasses = new TreeMap<>(classes);
+        try (final OutputStream os = Files.newOutputStream(target.toPath());
+                final BufferedOutputStream bos = new BufferedOutputStream(os);
+                final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sortedClasses.size());
+            for (Map.Entry<String, ClassInfo> entry : sortedClasses.entrySet()) {
+                final ClassInfo info = entry.getValue();
+                writeString(out, entry.getKey());
+                out.writeInt(info.access);
+                out.writeBoolean(info.superName != null);
+                out.writeInt(info.interfaces.size() + (info.superName != null ? 1 : 0));
+                if (info.superName != null) {
+                    writeString(out, info.superName);
+                }
+                for (String iface : info.interfaces) {
+                    writeString(out, iface);
+                }
+                out.writeInt(info.members.size());
+                for (Map.Entry<String, Integer> member : info.members.entrySet()) {
+                    writeString(out, member.getKey());
+                    out.writeInt(member.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index stored in the given file, or null if it was written by an incompatible version.
+     */
+    public static @Nullable ClassHierarchyIndex read(File source) throws IOException {
+        try (final InputStream is = Files.newInputStream(source.toPath());
+                final BufferedInputStream bis = new BufferedInputStream(is);
+                final DataInputStream in = new DataInputStream(bis)) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final int classCount = in.readInt();
+            final Map<String, ClassInfo> classes = new HashMap<>(classCount * 2);
+            for (int c = 0; c < classCount; c++) {
+                final String name = readString(in);
+                final int access = in.readInt();
+                final boolean hasSuper = in.readBoolean();
+                final int parentCount = in.readInt();
+                final List<String> parents = new ArrayList<>(parentCount);
+                for (int p = 0; p < parentCount; p++) {
+                    parents.add(readString(in));
+                }
+                final int memberCount = in.readInt();
+                final Map<String, Integer> members = new TreeMap<>();
+                for (int m = 0; m < memberCount; m++) {
+                    members.put(readString(in), in.readInt());
+                }
+                final String superName = hasSuper ? parents.get(0) : null;
+                final List<String> interfaces = parents.subList(hasSuper ? 1 : 0, parents.size());
+                classes.put(name, new ClassInfo(access, superName, interfaces, members));
+            }
+            return new ClassHierarchyIndex(classes);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The header of a single indexed class, immutable.
+     */
+    public static final class ClassInfo {
+
+        private final int access;
+        private final @Nullable String superName;
+        private final List<String> interfaces;
+        private final Set<String> parents;
+        // name + descriptor -> access flags, fields use their name and a space-separated descriptor
+        private final Map<String, Integer> members;
+
+        ClassInfo(int access, @Nullable String superName, List<String> interfaces, Map<String, Integer> members) {
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = Collections.unmodifiableList(new ArrayList<>(interfaces));
+            // Same order as SpecialSource's JarProvider, which decides the owner found first for inherited members
+            final Set<String> parents = new LinkedHashSet<>(interfaces);
+            if (superName != null) {
+                parents.add(superName);
+            }
+            this.parents = Collections.unmodifiableSet(parents);
+            this.members = Collections.unmodifiableMap(members);
+        }
+
+        public int getAccess() {
+            return access;
+        }
+
+        public @Nullable String getSuperName() {
+            return superName;
+        }
+
+        public List<String> getInterfaces() {
+            return interfaces;
+        }
+
+        /**
+         * @return The interfaces followed by the super class.
+         */
+        public Set<String> getParents() {
+            return parents;
+        }
+
+        /**
+         * @return The access flags of a method ({@code name + desc}) or field ({@code name + " " + desc}) declared in
+         *         this class, or null if it is not declared here.
+         */
+        public @Nullable Integer getMemberAccess(String member) {
+            return members.get(member);
+        }
+
+        /**
+         * @return All declared members, see {@link #getMemberAccess(String)} for the key format.
+         */
+        public Map<String, Integer> getMembers() {
+            return members;
+        }
+    }
+
+    private static final class HeaderVisitor extends ClassVisitor {
+
+        String name;
+        int access;
+        String superName;
+        String[] interfaces;
+        final Map<String, Integer> members = new TreeMap<>();
+
+        HeaderVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            this.name = name;
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = interfaces == null ? new String[0] : interfaces;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            members.put(name + " " + descriptor, access);
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                String[] exceptions) {
+            members.put(name + descriptor, access);
+            return null;
+        }
+
+        ClassInfo toClassInfo() {
+            final List<String> interfaceList = new ArrayList<>(interfaces.length);
+            Collections.addAll(interfaceList, interfaces);
+            return new ClassInfo(access, superName, interfaceList, members);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A set of access transformer files parsed once into their individual entries, in file order. The same parsed entries
+ * feed the SpecialSource access maps and the inner class access fixups of the exceptor json, so the AT files don't
+ * have to be re-read and re-split for each of them.
+ */
+public final class CompiledAccessTransformers {
+
+    private final List<Entry> entries;
+    private final List<Entry> innerClassEntries;
+
+    private CompiledAccessTransformers(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+        final List<Entry> innerClasses = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.getInnerClassName() != null) {
+                innerClasses.add(entry);
+            }
+        }
+        this.innerClassEntries = Collections.unmodifiableList(innerClasses);
+    }
+
+    /**
+     * Parses the given AT files, skipping comments and blank lines.
+     *
+     * @throws IOException If a file can't be read or has a line without a target
+     */
+    public static CompiledAccessTransformers parse(Collection<File> atFiles) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        for (File atFile : atFiles) {
+            int lineNumber = 0;
+            for (String line : FileUtils.readLines(atFile, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                // eg. "public net.minecraft.foo.Bar func_12345_a(I)V # comment"
+                final int commentIdx = line.indexOf('#');
+                if (commentIdx != -1) {
+                    line = line.substring(0, commentIdx);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                final int spaceIdx = line.indexOf(' ');
+                if (spaceIdx == -1) {
+                    // SpecialSource rejects these too, don't let a malformed AT be dropped silently
+                    throw new IOException("Invalid access transformer line " + atFile + ":" + lineNumber + ": " + line);
+                }
+                entries.add(new Entry(line.substring(0, spaceIdx), line.substring(spaceIdx + 1)));
+            }
+        }
+        return new CompiledAccessTransformers(entries);
+    }
+
+    /**
+     * @return All entries, in the order they appear in the AT files.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The entries that change the access of a nested class as a whole.
+     */
+    public List<Entry> getInnerClassEntries() {
+        return innerClassEntries;
+    }
+
+    /**
+     * Feeds every entry to an access map, use with {@code accessMap::addAccessChange}.
+     *
+     * @param addAccessChange Takes the symbol string ("net.minecraft.foo.Bar func_12345_a(I)V") and the access string
+     *                        ("public-f")
+     */
+    public void forEachAccessChange(BiConsumer<String, String> addAccessChange) {
+        for (Entry entry : entries) {
+            addAccessChange.accept(entry.symbol, entry.access);
+        }
+    }
+
+    /**
+     * A single AT line.
+     */
+    public static final class Entry {
+
+        private final String access;
+        private final String symbol;
+        private final @Nullable String innerClassName;
+
+        Entry(String access, String symbol) {
+            this.access = access;
+            this.symbol = symbol;
+            final String internalSymbol = symbol.replace('.', '/');
+            this.innerClassName = (internalSymbol.indexOf(' ') == -1 && internalSymbol.indexOf('$') > 0)
+                    ? internalSymbol
+                    : null;
+        }
+
+        /**
+         * @return The access modifier, eg. "public" or "protected-f"
+         */
+        public String getAccess() {
+            return access;
+        }
+
+        /**
+         * @return The class name with an optional member separated by a space
+         */
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * @return The internal name of the nested class this entry applies to, if it has no member
+         */
+        public @Nullable String getInnerClassName() {
+            return innerClassName;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.gtnewhorizons.retrofuturagradle.util;
 
 import org.gradle.api.Task;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputFile;
 
 public interface IJarOutputTask extends Task {
@@ -9,6 +12,14 @@ public interface IJarOutputTask extends Task {
     @OutputFile
     RegularFileProperty getOutputJar();
 
+    /**
+     * How to compress the output jar, {@link JarCompression#DEFAULT} if not set. Ignored by tasks that copy a jar
+     * written by an external tool.
+     */
+    @Input
+    @Optional
+    Property<JarCompression> getJarCompression();
+
     /**
      * @return A function that updates this digest with a hash of all the non-jar inputs.
      */
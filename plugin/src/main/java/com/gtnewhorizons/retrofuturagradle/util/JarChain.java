@@ -16,6 +16,7 @@ import org.apache.commons.io.FileUtils;
 import org.gradle.api.Action;
 import org.gradle.api.Task;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskProvider;
 
 import com.gtnewhorizons.retrofuturagradle.Constants;
@@ -50,13 +51,26 @@ public class JarChain {
         // It has to be eager to avoid having to serialize the TaskProvider :(
         final IJarOutputTask eagerTask = newTask.get();
         taskChainOutputs.add(eagerTask.getOutputJar());
-        taskChainHashers.add(eagerTask.hashInputs());
+        // The compression is an input of every task in the chain, but not covered by the individual hashInputs()
+        final MessageDigestConsumer compressionHasher = HashUtils.addPropertyToHash(eagerTask.getJarCompression());
+        taskChainHashers.add(eagerTask.hashInputs().andThen(compressionHasher));
         newTask.configure(task -> {
             task.getOutputs().upToDateWhen(ignored -> this.isUpToDate());
             task.onlyIf(ignored -> !this.isUpToDate());
         });
     }
 
+    /**
+     * Sets the default compression of the jars in the chain, all but the last one are deleted once the chain finishes
+     * so they can use a cheaper setting. Must be called before {@link #finish()}.
+     */
+    public void setCompression(Provider<JarCompression> intermediate, Provider<JarCompression> last) {
+        for (int i = 0; i < taskChain.size(); i++) {
+            final Provider<JarCompression> compression = (i == taskChain.size() - 1) ? last : intermediate;
+            taskChain.get(i).configure(task -> task.getJarCompression().convention(compression));
+        }
+    }
+
     public void finish() {
         if (taskChain.isEmpty()) {
             return;
@@ -0,0 +1,38 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.util.zip.Deflater;
+
+import org.gradle.api.tasks.bundling.ZipEntryCompression;
+
+/**
+ * How the entries of jars written by RFG get compressed, trading jar size for the CPU time spent compressing.
+ */
+public enum JarCompression {
+
+    /** No compression at all, for jars that are only read once before being deleted */
+    STORE(Deflater.NO_COMPRESSION),
+    /** The fastest deflate level */
+    FAST(Deflater.BEST_SPEED),
+    /** The default deflate level, same as the JDK and Gradle's jar tasks */
+    DEFAULT(Deflater.DEFAULT_COMPRESSION);
+
+    private final int deflateLevel;
+
+    JarCompression(int deflateLevel) {
+        this.deflateLevel = deflateLevel;
+    }
+
+    /**
+     * @return The {@link Deflater} level to use, meaningless for {@link #STORE}
+     */
+    public int getDeflateLevel() {
+        return deflateLevel;
+    }
+
+    /**
+     * @return The closest setting for Gradle's own archive tasks, which don't have compression levels
+     */
+    public ZipEntryCompression toZipEntryCompression() {
+        return this == STORE ? ZipEntryCompression.STORED : ZipEntryCompression.DEFLATED;
+    }
+}
@@ -0,0 +1,282 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes jar files, copying entries that don't change straight from their source archive: the compressed bytes and
+ * the CRC are transferred as they are, without inflating and deflating the contents again. Entries can be given a
+ * fixed timestamp for reproducible output, and duplicate entry names are rejected like {@link
+ * java.util.zip.ZipOutputStream} does.
+ * <p>
+ * New entries are deflated into memory buffers on the common fork-join pool, a bounded window of them is kept in
+ * flight and they are appended to the jar strictly in the order they were added, so the output is the same as if
+ * everything was compressed on the calling thread.
+ */
+public final class JarWriter implements Closeable {
+
+    /** Passed as the entry time to keep the source entry's timestamp when copying, or the current time otherwise */
+    public static final long KEEP_TIME = -1;
+
+    /**
+     * Copied from Gradle ZipCopyAction internals. Note that setting the January 1st 1980 (or even worse, "0", as time)
+     * won't work due to Java 8 doing some interesting time processing: It checks if this date is before January 1st
+     * 1980 and if it is it starts setting some extra fields in the zip. Java 7 does not do that - but in the zip not
+     * the milliseconds are saved but values for each of the date fields - but no time zone. And 1980 is the first year
+     * which can be saved. If you use January 1st 1980 then it is treated as a special flag in Java 8. Moreover, only
+     * even seconds can be stored in the zip file. Java 8 uses the upper half of some other long to store the remaining
+     * millis while Java 7 doesn't do that. So make sure that your seconds are even. Moreover, parsing happens via `new
+     * Date(millis)` in java.util.zip.ZipUtils#javaToDosTime() so we must use default timezone and locale. The date is
+     * 1980 February 1st CET.
+     */
+    public static final long CONSTANT_TIME_FOR_ZIP_ENTRIES = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0)
+            .getTimeInMillis();
+
+    private static final int MAX_PENDING_ENTRIES = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+
+    private final ZipArchiveOutputStream out;
+    private final long entryTime;
+    private final JarCompression compression;
+    private final Set<String> writtenNames = new HashSet<>();
+    private final ArrayDeque<CompletableFuture<CompressedEntry>> pending = new ArrayDeque<>();
+
+    /**
+     * @param target      The jar to (over)write
+     * @param entryTime   The modification time to give every entry, or {@link #KEEP_TIME}
+     * @param compression How to compress new entries, copied entries keep their original compression
+     */
+    public JarWriter(File target, long entryTime, JarCompression compression) throws IOException {
+        this.out = new ZipArchiveOutputStream(new BufferedOutputStream(FileUtils.openOutputStream(target)));
+        this.entryTime = entryTime;
+        this.compression = compression;
+    }
+
+    public JarWriter(File target, long entryTime) throws IOException {
+        this(target, entryTime, JarCompression.DEFAULT);
+    }
+
+    public JarWriter(File target, JarCompression compression) throws IOException {
+        this(target, KEEP_TIME, compression);
+    }
+
+    public JarWriter(File target) throws IOException {
+        this(target, KEEP_TIME, JarCompression.DEFAULT);
+    }
+
+    /**
+     * Opens an archive to copy entries from, the returned file can be read from multiple threads at once.
+     */
+    public static ZipFile openArchive(File archive) throws IOException {
+        return ZipFile.builder().setFile(archive).get();
+    }
+
+    /**
+     * @return All entries of the archive sorted by name, for a deterministic output order.
+     */
+    public static List<ZipArchiveEntry> sortedEntries(ZipFile archive) {
+        final List<ZipArchiveEntry> entries = new ArrayList<>(Collections.list(archive.getEntries()));
+        entries.sort(Comparator.comparing(ZipEntry::getName));
+        return entries;
+    }
+
+    /**
+     * @return The uncompressed contents of the entry.
+     */
+    public static byte[] readEntry(ZipFile archive, ZipArchiveEntry entry) throws IOException {
+        try (InputStream is = archive.getInputStream(entry)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    /**
+     * @return If an entry with the given name was already written.
+     */
+    public boolean contains(String name) {
+        return writtenNames.contains(name);
+    }
+
+    /**
+     * Queues the entry to be compressed in the background, the array must not be modified afterwards.
+     */
+    public void write(String name, byte[] data) throws IOException {
+        write(name, data, KEEP_TIME);
+    }
+
+    public void write(String name, InputStream data) throws IOException {
+        write(name, data, KEEP_TIME);
+    }
+
+    /**
+     * @param sourceTime The timestamp of the source file, used unless this writer has a fixed entry time
+     */
+    public void write(String name, InputStream data, long sourceTime) throws IOException {
+        write(name, IOUtils.toByteArray(data), sourceTime);
+    }
+
+    private void write(String name, byte[] data, long sourceTime) throws IOException {
+        checkDuplicate(name);
+        final ZipArchiveEntry entry = newEntry(name, sourceTime);
+        if (compression == JarCompression.STORE) {
+            enqueue(CompletableFuture.completedFuture(store(entry, data)));
+        } else {
+            final int level = compression.getDeflateLevel();
+            enqueue(CompletableFuture.supplyAsync(() -> deflate(entry, data, level)));
+        }
+    }
+
+    public void writeDirectory(String name) throws IOException {
+        final String dirName = name.endsWith("/") ? name : name + "/";
+        checkDuplicate(dirName);
+        final ZipArchiveEntry entry = newEntry(dirName, KEEP_TIME);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(0);
+        entry.setCompressedSize(0);
+        entry.setCrc(0);
+        enqueue(CompletableFuture.completedFuture(new CompressedEntry(entry, new byte[0])));
+    }
+
+    /**
+     * Copies an entry with its original name, see {@link #copyRaw(ZipFile, ZipArchiveEntry, String)}.
+     */
+    public void copyRaw(ZipFile source, ZipArchiveEntry entry) throws IOException {
+        copyRaw(source, entry, entry.getName());
+    }
+
+    /**
+     * Copies an entry of the given archive under a new name without recompressing it. Entries that can't be copied as
+     * they are (encrypted or using unusual compression methods) are decompressed and stored again instead.
+     */
+    public void copyRaw(ZipFile source, ZipArchiveEntry entry, String name) throws IOException {
+        if (entry.isDirectory()) {
+            writeDirectory(name);
+            return;
+        }
+        final int method = entry.getMethod();
+        if (entry.getGeneralPurposeBit().usesEncryption()
+                || (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)) {
+            write(name, readEntry(source, entry), entry.getTime());
+            return;
+        }
+        checkDuplicate(name);
+        final ZipArchiveEntry copy = newEntry(name, entry.getTime());
+        copy.setMethod(method);
+        copy.setCrc(entry.getCrc());
+        copy.setSize(entry.getSize());
+        copy.setCompressedSize(entry.getCompressedSize());
+        final byte[] rawData;
+        try (InputStream raw = source.getRawInputStream(entry)) {
+            rawData = IOUtils.toByteArray(raw);
+        }
+        enqueue(CompletableFuture.completedFuture(new CompressedEntry(copy, rawData)));
+    }
+
+    private ZipArchiveEntry newEntry(String name, long sourceTime) {
+        final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        final long time = (entryTime != KEEP_TIME) ? entryTime : sourceTime;
+        entry.setTime((time != KEEP_TIME) ? time : System.currentTimeMillis());
+        return entry;
+    }
+
+    private void checkDuplicate(String name) throws ZipException {
+        if (!writtenNames.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+    }
+
+    private static CompressedEntry store(ZipArchiveEntry entry, byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setCrc(crc.getValue());
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        return new CompressedEntry(entry, data);
+    }
+
+    private static CompressedEntry deflate(ZipArchiveEntry entry, byte[] data, int level) {
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        final Deflater deflater = new Deflater(level, true);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        entry.setMethod(ZipEntry.DEFLATED);
+        entry.setCrc(crc.getValue());
+        entry.setSize(data.length);
+        entry.setCompressedSize(compressed.size());
+        return new CompressedEntry(entry, compressed.toByteArray());
+    }
+
+    private void enqueue(CompletableFuture<CompressedEntry> entry) throws IOException {
+        pending.addLast(entry);
+        while (pending.size() > MAX_PENDING_ENTRIES) {
+            writePending();
+        }
+    }
+
+    private void writePending() throws IOException {
+        final CompressedEntry entry;
+        try {
+            entry = pending.removeFirst().join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+        }
+        out.addRawArchiveEntry(entry.entry, new ByteArrayInputStream(entry.data));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                writePending();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final class CompressedEntry {
+
+        final ZipArchiveEntry entry;
+        final byte[] data;
+
+        CompressedEntry(ZipArchiveEntry entry, byte[] data) {
+            this.entry = entry;
+            this.data = data;
+        }
+    }
+}
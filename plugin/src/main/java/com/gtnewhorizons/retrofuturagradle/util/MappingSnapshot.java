@@ -0,0 +1,249 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The method, field and parameter names parsed from the MCP CSV files, stored in a compact binary file that is
+ * memory-mapped when opened. Sections are only decoded when a consumer asks for them, so e.g. tasks that only need
+ * method and field names never touch the javadoc strings or the parameter section.
+ */
+public final class MappingSnapshot {
+
+    /** Bump whenever the serialized format or the CSV parsing changes */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x5246474D; // RFGM
+    private static final int HEADER_SIZE = 4 * 5;
+
+    private final ByteBuffer buffer;
+    private final int methodsOffset;
+    private final int fieldsOffset;
+    private final int paramsOffset;
+
+    private MappingSnapshot(ByteBuffer buffer, int methodsOffset, int fieldsOffset, int paramsOffset) {
+        this.buffer = buffer;
+        this.methodsOffset = methodsOffset;
+        this.fieldsOffset = fieldsOffset;
+        this.paramsOffset = paramsOffset;
+    }
+
+    /**
+     * @return A hex digest of the contents of the given CSV files, for use as a cache key.
+     */
+    public static String digestCsvs(File methodsCsv, File fieldsCsv, @Nullable File paramsCsv,
+            @Nullable Collection<File> extraParamsCsvs) throws IOException {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        digestFile(digest, "methods", methodsCsv);
+        digestFile(digest, "fields", fieldsCsv);
+        digestFile(digest, "params", paramsCsv);
+        if (extraParamsCsvs != null) {
+            for (File extraParamsCsv : extraParamsCsvs) {
+                digestFile(digest, "extraParams", extraParamsCsv);
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static void digestFile(MessageDigest digest, String role, @Nullable File file) throws IOException {
+        digest.update(role.getBytes(StandardCharsets.UTF_8));
+        if (file == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(DigestUtils.sha256(FileUtils.readFileToByteArray(file)));
+        }
+    }
+
+    /**
+     * Writes the method, field and param mappings of the given set (without generics) to a snapshot file.
+     */
+    public static void write(Utilities.MappingsSet mappings, File target) throws IOException {
+        final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+        writeMemberSection(mappings.methodMappings, methods);
+        final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+        writeMemberSection(mappings.fieldMappings, fields);
+        final ByteArrayOutputStream params = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(params)) {
+            out.writeInt(mappings.paramMappings.size());
+            for (Map.Entry<String, String> entry : mappings.paramMappings.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+
+        try (final OutputStream os = Files.newOutputStream(target.toPath());
+                final BufferedOutputStream bos = new BufferedOutputStream(os);
+                final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(HEADER_SIZE);
+            out.writeInt(HEADER_SIZE + methods.size());
+            out.writeInt(HEADER_SIZE + methods.size() + fields.size());
+            methods.writeTo(out);
+            fields.writeTo(out);
+            params.writeTo(out);
+        }
+    }
+
+    private static void writeMemberSection(Map<String, Utilities.Mapping> mappings, OutputStream target)
+            throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(target)) {
+            out.writeInt(mappings.size());
+            for (Map.Entry<String, Utilities.Mapping> entry : mappings.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue().name);
+                writeString(out, entry.getValue().javadoc);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps the given snapshot file, the contents are only decoded when requested.
+     *
+     * @return The snapshot, or null if it was written by an incompatible version.
+     */
+    public static @Nullable MappingSnapshot open(File file) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            return null;
+        }
+        return new MappingSnapshot(buffer, buffer.getInt(8), buffer.getInt(12), buffer.getInt(16));
+    }
+
+    /**
+     * @return A new mutable mappings set with the method, field and param mappings of this snapshot.
+     */
+    public Utilities.MappingsSet toMappingsSet() {
+        final Utilities.MappingsSet mappings = new Utilities.MappingsSet();
+        mappings.methodMappings.putAll(getMethodMappings());
+        mappings.fieldMappings.putAll(getFieldMappings());
+        mappings.paramMappings.putAll(getParamNames());
+        return mappings;
+    }
+
+    /**
+     * @return SRG->MCP method mappings, including the javadocs
+     */
+    public Map<String, Utilities.Mapping> getMethodMappings() {
+        return readMemberSection(methodsOffset);
+    }
+
+    /**
+     * @return SRG->MCP field mappings, including the javadocs
+     */
+    public Map<String, Utilities.Mapping> getFieldMappings() {
+        return readMemberSection(fieldsOffset);
+    }
+
+    /**
+     * @return SRG->MCP method names
+     */
+    public Map<String, String> getMethodNames() {
+        return readMemberNames(methodsOffset);
+    }
+
+    /**
+     * @return SRG->MCP field names
+     */
+    public Map<String, String> getFieldNames() {
+        return readMemberNames(fieldsOffset);
+    }
+
+    /**
+     * @return SRG->MCP parameter names
+     */
+    public Map<String, String> getParamNames() {
+        final ByteBuffer in = section(paramsOffset);
+        final int count = in.getInt();
+        final Map<String, String> names = new HashMap<>(mapCapacity(count));
+        for (int i = 0; i < count; i++) {
+            names.put(readString(in), readString(in));
+        }
+        return names;
+    }
+
+    /**
+     * @return A lookup table of the method, field and param names, built without decoding the javadocs.
+     */
+    public SrgMappingTable toMappingTable() {
+        final Map<String, String> combined = getMethodNames();
+        combined.putAll(getFieldNames());
+        combined.putAll(getParamNames());
+        return SrgMappingTable.build(combined);
+    }
+
+    private Map<String, Utilities.Mapping> readMemberSection(int offset) {
+        final ByteBuffer in = section(offset);
+        final int count = in.getInt();
+        final Map<String, Utilities.Mapping> target = new HashMap<>(mapCapacity(count));
+        for (int i = 0; i < count; i++) {
+            final String srg = readString(in);
+            final String name = readString(in);
+            final String javadoc = readString(in);
+            target.put(srg, new Utilities.Mapping(name, javadoc));
+        }
+        return target;
+    }
+
+    private Map<String, String> readMemberNames(int offset) {
+        final ByteBuffer in = section(offset);
+        final int count = in.getInt();
+        final Map<String, String> names = new HashMap<>(mapCapacity(count));
+        for (int i = 0; i < count; i++) {
+            final String srg = readString(in);
+            final String name = readString(in);
+            // skip the javadoc
+            in.position(in.position() + in.getInt());
+            names.put(srg, name);
+        }
+        return names;
+    }
+
+    /** A private view of the mapped file so that concurrent readers don't share a position */
+    private ByteBuffer section(int offset) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        return view;
+    }
+
+    private static int mapCapacity(int count) {
+        return count + count / 3 + 1;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
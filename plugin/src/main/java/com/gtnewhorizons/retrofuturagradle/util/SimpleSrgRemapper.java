@@ -1,18 +1,24 @@
 package com.gtnewhorizons.retrofuturagradle.util;
 
 import java.util.Map;
+import java.util.function.Function;
 
 import org.objectweb.asm.commons.Remapper;
 
 /**
- * A {@link Remapper} using a {@link Map} to define its mapping, using simple SRG-style mappings.
+ * A {@link Remapper} using a {@link Map} or {@link SrgMappingTable} to define its mapping, using simple SRG-style
+ * mappings.
  */
 public class SimpleSrgRemapper extends Remapper {
 
-    private final Map<String, String> mapping;
+    private final Function<String, String> mapping;
 
     public SimpleSrgRemapper(final Map<String, String> mapping) {
-        this.mapping = mapping;
+        this.mapping = mapping::get;
+    }
+
+    public SimpleSrgRemapper(final SrgMappingTable mapping) {
+        this.mapping = mapping::get;
     }
 
     @Override
@@ -41,6 +47,6 @@ public class SimpleSrgRemapper extends Remapper {
 
     @Override
     public String map(final String key) {
-        return mapping.get(key);
+        return mapping.apply(key);
     }
 }
@@ -0,0 +1,226 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * A compact, immutable SRG->MCP name table keyed by the numeric id embedded in SRG names (func_123_a, field_123_a,
+ * p_123_1_, p_i123_1_). Keys are kept in a sorted primitive array with the names deduplicated, and lookups can be done
+ * straight from a region of a {@link CharSequence} without creating a substring for the looked up name.
+ */
+public final class SrgMappingTable {
+
+    private static final long KIND_METHOD = 1;
+    private static final long KIND_FIELD = 2;
+    private static final long KIND_PARAM = 3;
+    private static final long KIND_CTOR_PARAM = 4;
+    private static final int KIND_SHIFT = 56;
+    private static final int ID_SHIFT = 16;
+    private static final long MAX_ID = (1L << (KIND_SHIFT - ID_SHIFT)) - 1;
+    private static final int MAX_PARAM_INDEX = (1 << ID_SHIFT) - 1;
+
+    private final long[] keys;
+    // Full srg names to tell apart names that share an id, e.g. func_123_a and func_123_b
+    private final String[] srgNames;
+    private final String[] names;
+    // Names that don't follow the numeric scheme
+    private final Map<String, String> irregular;
+
+    private SrgMappingTable(long[] keys, String[] srgNames, String[] names, Map<String, String> irregular) {
+        this.keys = keys;
+        this.srgNames = srgNames;
+        this.names = names;
+        this.irregular = irregular;
+    }
+
+    /**
+     * @param srgToMcp SRG name to MCP name mappings, can contain methods, fields and parameters
+     */
+    public static SrgMappingTable build(Map<String, String> srgToMcp) {
+        final List<Map.Entry<String, String>> regular = new ArrayList<>(srgToMcp.size());
+        final Map<String, String> irregular = new HashMap<>();
+        for (Map.Entry<String, String> entry : srgToMcp.entrySet()) {
+            final String srg = entry.getKey();
+            if (parseKey(srg, 0, srg.length()) == -1) {
+                irregular.put(srg, entry.getValue());
+            } else {
+                regular.add(entry);
+            }
+        }
+        regular.sort(
+                Comparator.comparingLong((Map.Entry<String, String> e) -> parseKey(e.getKey(), 0, e.getKey().length()))
+                        .thenComparing(Map.Entry::getKey));
+
+        final int size = regular.size();
+        final long[] keys = new long[size];
+        final String[] srgNames = new String[size];
+        final String[] names = new String[size];
+        // A lot of MCP names repeat (getX, func_..., p_1_), store each of them once
+        final Map<String, String> namePool = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final Map.Entry<String, String> entry = regular.get(i);
+            srgNames[i] = entry.getKey();
+            keys[i] = parseKey(srgNames[i], 0, srgNames[i].length());
+            names[i] = namePool.computeIfAbsent(entry.getValue(), n -> n);
+        }
+        return new SrgMappingTable(
+                keys,
+                srgNames,
+                names,
+                irregular.isEmpty() ? Collections.emptyMap() : irregular);
+    }
+
+    /**
+     * @return The number of mappings in this table
+     */
+    public int size() {
+        return keys.length + irregular.size();
+    }
+
+    /**
+     * @return The MCP name for the given SRG name, or null if it's not mapped
+     */
+    public @Nullable String get(String srgName) {
+        return get(srgName, 0, srgName.length());
+    }
+
+    /**
+     * @return The MCP name for the SRG name in text[start, end), or null if it's not mapped
+     */
+    public @Nullable String get(CharSequence text, int start, int end) {
+        final long key = parseKey(text, start, end);
+        if (key == -1) {
+            return irregular.isEmpty() ? null : irregular.get(text.subSequence(start, end).toString());
+        }
+        int idx = Arrays.binarySearch(keys, key);
+        if (idx < 0) {
+            return null;
+        }
+        while (idx > 0 && keys[idx - 1] == key) {
+            idx--;
+        }
+        for (; idx < keys.length && keys[idx] == key; idx++) {
+            if (regionEquals(srgNames[idx], text, start, end)) {
+                return names[idx];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the numeric key of a regular SRG name, the key doesn't include the side suffix of methods and fields.
+     *
+     * @return The key, or -1 if text[start, end) is not a regular SRG name
+     */
+    public static long parseKey(CharSequence text, int start, int end) {
+        if (end - start < 4) {
+            return -1;
+        }
+        final char first = text.charAt(start);
+        if (first == 'f') {
+            if (regionStartsWith(text, start, end, "func_")) {
+                return parseMemberKey(text, start + 5, end, KIND_METHOD);
+            } else if (regionStartsWith(text, start, end, "field_")) {
+                return parseMemberKey(text, start + 6, end, KIND_FIELD);
+            }
+        } else if (first == 'p' && text.charAt(start + 1) == '_') {
+            return parseParamKey(text, start + 2, end);
+        }
+        return -1;
+    }
+
+    /** Parses {@code 123_suffix} */
+    private static long parseMemberKey(CharSequence text, int start, int end, long kind) {
+        long id = 0;
+        int i = start;
+        for (; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            id = id * 10 + (c - '0');
+            if (id > MAX_ID) {
+                return -1;
+            }
+        }
+        if (i == start || i + 1 >= end || text.charAt(i) != '_') {
+            return -1;
+        }
+        return (kind << KIND_SHIFT) | id;
+    }
+
+    /** Parses {@code 123_1_} or {@code i123_1_} */
+    private static long parseParamKey(CharSequence text, int start, int end) {
+        long kind = KIND_PARAM;
+        int i = start;
+        if (i < end && text.charAt(i) == 'i') {
+            kind = KIND_CTOR_PARAM;
+            i++;
+        }
+        final int idStart = i;
+        long id = 0;
+        for (; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            id = id * 10 + (c - '0');
+            if (id > MAX_ID) {
+                return -1;
+            }
+        }
+        if (i == idStart || i >= end || text.charAt(i) != '_') {
+            return -1;
+        }
+        i++;
+        final int indexStart = i;
+        int index = 0;
+        for (; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            index = index * 10 + (c - '0');
+            if (index > MAX_PARAM_INDEX) {
+                return -1;
+            }
+        }
+        if (i == indexStart || i != end - 1 || text.charAt(i) != '_') {
+            return -1;
+        }
+        return (kind << KIND_SHIFT) | (id << ID_SHIFT) | index;
+    }
+
+    private static boolean regionStartsWith(CharSequence text, int start, int end, String prefix) {
+        final int length = prefix.length();
+        if (end - start < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(String expected, CharSequence text, int start, int end) {
+        final int length = expected.length();
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
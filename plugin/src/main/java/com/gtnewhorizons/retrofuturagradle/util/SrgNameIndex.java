@@ -0,0 +1,253 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+/**
+ * An inverted index of the SRG names found while remapping a source jar: which files and line ranges mention each
+ * name, and what every name was mapped to at the time. When only the mappings change between two runs, the index tells
+ * which files mention a name with a changed mapping, so only those files have to be remapped again.
+ */
+public final class SrgNameIndex {
+
+    /** Bump whenever the serialized format or what gets recorded changes */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x5246474E; // RFGN
+
+    private final String inputsKey;
+    private String outputDigest = "";
+    // file -> names used in the file
+    private final Map<String, FileNames> files = new ConcurrentHashMap<>();
+    // srg name -> the mapping state the files were last remapped with
+    private final Map<String, String> mappingStates = new HashMap<>();
+
+    /**
+     * @param inputsKey A digest of every input other than the mappings that affects the remapped output
+     */
+    public SrgNameIndex(String inputsKey) {
+        this.inputsKey = inputsKey;
+    }
+
+    /**
+     * @return The location of the index for the given remapped jar
+     */
+    public static File locationFor(File outputJar) {
+        return new File(outputJar.getPath() + ".srgindex");
+    }
+
+    public String getInputsKey() {
+        return inputsKey;
+    }
+
+    /**
+     * @return The digest of the jar the index was saved with, to detect jars modified or replaced since
+     */
+    public String getOutputDigest() {
+        return outputDigest;
+    }
+
+    public void setOutputDigest(String outputDigest) {
+        this.outputDigest = outputDigest;
+    }
+
+    /**
+     * Replaces the recorded names of a file, safe to call concurrently for different files.
+     */
+    public void putFile(String file, FileNames names) {
+        files.put(file, names);
+    }
+
+    /**
+     * @return The names recorded for the given file, mapped to their {first line, last line} range
+     */
+    public Map<String, int[]> getFileNames(String file) {
+        final FileNames names = files.get(file);
+        return names == null ? Collections.emptyMap() : Collections.unmodifiableMap(names.lineRanges);
+    }
+
+    /**
+     * @param currentStates Computes the current mapping state of an SRG name, compared to the saved state with equals
+     * @return All recorded names whose mapping state differs from the one saved in this index
+     */
+    public Set<String> findChangedNames(Function<String, String> currentStates) {
+        final Set<String> changed = new TreeSet<>();
+        for (FileNames names : files.values()) {
+            for (String name : names.lineRanges.keySet()) {
+                if (!changed.contains(name) && !currentStates.apply(name).equals(mappingStates.get(name))) {
+                    changed.add(name);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return All files that mention at least one of the given names
+     */
+    public Set<String> findFilesUsing(Collection<String> names) {
+        final Set<String> found = new TreeSet<>();
+        for (Map.Entry<String, FileNames> file : files.entrySet()) {
+            for (String name : names) {
+                if (file.getValue().lineRanges.containsKey(name)) {
+                    found.add(file.getKey());
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of missing generics injected into all the recorded files
+     */
+    public int countGenericsApplied() {
+        int total = 0;
+        for (FileNames names : files.values()) {
+            total += names.genericsApplied;
+        }
+        return total;
+    }
+
+    /**
+     * Saves the current mapping state of every recorded name, to be called once all files are remapped.
+     */
+    public void updateMappingStates(Function<String, String> currentStates) {
+        mappingStates.clear();
+        for (FileNames names : files.values()) {
+            for (String name : names.lineRanges.keySet()) {
+                mappingStates.computeIfAbsent(name, currentStates);
+            }
+        }
+    }
+
+    public void write(File target) throws IOException {
+        // Sorted so that the same remapping always produces the same index
+        final Map<String, String> sortedStates = new TreeMap<>(mappingStates);
+        final Map<String, Integer> nameIds = new HashMap<>(sortedStates.size() * 2);
+        try (final OutputStream os = Files.newOutputStream(target.toPath());
+                final BufferedOutputStream bos = new BufferedOutputStream(os);
+                final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, inputsKey);
+            writeString(out, outputDigest);
+            out.writeInt(sortedStates.size());
+            for (Map.Entry<String, String> state : sortedStates.entrySet()) {
+                nameIds.put(state.getKey(), nameIds.size());
+                writeString(out, state.getKey());
+                writeString(out, state.getValue());
+            }
+            final Map<String, FileNames> sortedFiles = new TreeMap<>(files);
+            out.writeInt(sortedFiles.size());
+            for (Map.Entry<String, FileNames> file : sortedFiles.entrySet()) {
+                writeString(out, file.getKey());
+                out.writeInt(file.getValue().genericsApplied);
+                final Map<String, int[]> lineRanges = new TreeMap<>(file.getValue().lineRanges);
+                out.writeInt(lineRanges.size());
+                for (Map.Entry<String, int[]> range : lineRanges.entrySet()) {
+                    out.writeInt(nameIds.get(range.getKey()));
+                    out.writeInt(range.getValue()[0]);
+                    out.writeInt(range.getValue()[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index saved in the given file, or null if it was written by an incompatible version.
+     */
+    public static @Nullable SrgNameIndex read(File source) throws IOException {
+        try (final InputStream is = Files.newInputStream(source.toPath());
+                final BufferedInputStream bis = new BufferedInputStream(is);
+                final DataInputStream in = new DataInputStream(bis)) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final SrgNameIndex index = new SrgNameIndex(readString(in));
+            index.outputDigest = readString(in);
+            final String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString(in);
+                index.mappingStates.put(names[i], readString(in));
+            }
+            final int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                final String file = readString(in);
+                final FileNames fileNames = new FileNames();
+                fileNames.genericsApplied = in.readInt();
+                final int rangeCount = in.readInt();
+                for (int r = 0; r < rangeCount; r++) {
+                    final String name = names[in.readInt()];
+                    fileNames.lineRanges.put(name, new int[] { in.readInt(), in.readInt() });
+                }
+                index.files.put(file, fileNames);
+            }
+            return index;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The SRG names used in a single file, not thread-safe.
+     */
+    public static final class FileNames {
+
+        // srg name -> {first line, last line}
+        private final Map<String, int[]> lineRanges = new HashMap<>();
+        private int genericsApplied;
+
+        /**
+         * Records all SRG names found in the given line.
+         */
+        public void record(String line, int lineNumber) {
+            int start = SrgNameScanner.findSrgName(line, 0);
+            while (start != -1) {
+                final int end = SrgNameScanner.matchSrgName(line, start);
+                final int[] range = lineRanges.computeIfAbsent(line.substring(start, end), n -> new int[2]);
+                if (range[0] == 0) {
+                    range[0] = lineNumber;
+                }
+                range[1] = lineNumber;
+                start = SrgNameScanner.findSrgName(line, end);
+            }
+        }
+
+        /**
+         * Counts a missing generic injected into the file.
+         */
+        public void recordGenericApplied() {
+            genericsApplied++;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import java.util.function.Function;
+
+/**
+ * A character-level scanner for SRG-style names (func_123_a/field_123_a/p_123_1_), used instead of a regex for the hot
+ * source remapping paths. Names are only recognized on whole identifiers, so e.g. {@code xfunc_1_a} is left alone.
+ */
+public final class SrgNameScanner {
+
+    private SrgNameScanner() {}
+
+    /**
+     * Replaces all SRG names in the text with their MCP names from the given mappings.
+     *
+     * @return The remapped text, or the same instance if no names were changed
+     */
+    public static String remap(final String text, final Utilities.MappingsSet mappings) {
+        return remap(text, mappings::remapSimpleName);
+    }
+
+    /**
+     * Replaces all SRG names in the text with their MCP names from the given table, without creating substrings for the
+     * found names.
+     *
+     * @return The remapped text, or the same instance if no names were changed
+     */
+    public static String remap(final String text, final SrgMappingTable table) {
+        return remap(text, (RegionMapper) table::get);
+    }
+
+    /**
+     * Replaces all SRG names in the text using the given mapping function.
+     *
+     * @param mapper Returns the new name for a found SRG name, or the name itself to leave it unchanged
+     * @return The remapped text, or the same instance if no names were changed
+     */
+    public static String remap(final String text, final Function<String, String> mapper) {
+        return remap(text, (RegionMapper) (t, start, end) -> {
+            final String found = t.substring(start, end);
+            final String mapped = mapper.apply(found);
+            return found.equals(mapped) ? null : mapped;
+        });
+    }
+
+    @FunctionalInterface
+    private interface RegionMapper {
+
+        /** @return The new name for text[start, end), or null to leave it unchanged */
+        String map(String text, int start, int end);
+    }
+
+    private static String remap(final String text, final RegionMapper mapper) {
+        StringBuilder out = null;
+        int copiedUpTo = 0;
+        final int length = text.length();
+        int i = 0;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (!isIdentifierChar(c)) {
+                i++;
+                continue;
+            }
+            final int end = (c == 'f' || c == 'p') ? matchSrgName(text, i) : -1;
+            if (end == -1) {
+                i = identifierEnd(text, i);
+                continue;
+            }
+            final String mapped = mapper.map(text, i, end);
+            if (mapped != null) {
+                if (out == null) {
+                    out = new StringBuilder(length + 16);
+                }
+                out.append(text, copiedUpTo, i);
+                out.append(mapped);
+                copiedUpTo = end;
+            }
+            i = end;
+        }
+        if (out == null) {
+            return text;
+        }
+        out.append(text, copiedUpTo, length);
+        return out.toString();
+    }
+
+    /**
+     * @return The index of the first SRG name in the text at or after {@code from}, or -1 if there is none
+     */
+    public static int findSrgName(final CharSequence text, final int from) {
+        final int length = text.length();
+        int i = from;
+        // Don't start in the middle of an identifier
+        while (i > 0 && i < length && isIdentifierChar(text.charAt(i - 1))) {
+            i++;
+        }
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (!isIdentifierChar(c)) {
+                i++;
+                continue;
+            }
+            if ((c == 'f' || c == 'p') && matchSrgName(text, i) != -1) {
+                return i;
+            }
+            i = identifierEnd(text, i);
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if the identifier starting at {@code start} is a complete SRG name, does not check the character before
+     * {@code start}.
+     *
+     * @return The end index (exclusive) of the SRG name, or -1 if there is none at the given index
+     */
+    public static int matchSrgName(final CharSequence text, final int start) {
+        final int end = wordEnd(text, start);
+        if (end < text.length() && text.charAt(end) == '$') {
+            return -1;
+        }
+        if (startsWith(text, start, end, "func_")) {
+            return matchMemberName(text, start + 5, end);
+        } else if (startsWith(text, start, end, "field_")) {
+            return matchMemberName(text, start + 6, end);
+        } else if (startsWith(text, start, end, "p_")) {
+            return matchParamName(text, start + 2, end);
+        }
+        return -1;
+    }
+
+    /** Matches {@code \d+_[a-zA-Z_]+} spanning the whole [start, end) range */
+    private static int matchMemberName(final CharSequence text, final int start, final int end) {
+        int i = start;
+        while (i < end && isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == start || i >= end || text.charAt(i) != '_') {
+            return -1;
+        }
+        i++;
+        if (i == end) {
+            return -1;
+        }
+        for (; i < end; i++) {
+            final char c = text.charAt(i);
+            if (!isAsciiLetter(c) && c != '_') {
+                return -1;
+            }
+        }
+        return end;
+    }
+
+    /** Matches {@code \w+_\d+_} spanning the whole [start, end) range */
+    private static int matchParamName(final CharSequence text, final int start, final int end) {
+        if (end - start < 4 || text.charAt(end - 1) != '_') {
+            return -1;
+        }
+        int i = end - 2;
+        while (i >= start && isDigit(text.charAt(i))) {
+            i--;
+        }
+        if (i == end - 2 || i <= start || text.charAt(i) != '_') {
+            return -1;
+        }
+        return end;
+    }
+
+    private static boolean startsWith(final CharSequence text, final int start, final int end, final String prefix) {
+        final int prefixLength = prefix.length();
+        if (end - start < prefixLength) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (text.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return The index after the last word character ({@code [a-zA-Z0-9_]}) of the run starting at start */
+    private static int wordEnd(final CharSequence text, final int start) {
+        final int length = text.length();
+        int i = start;
+        while (i < length && isWordChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /** @return The index after the last identifier character of the run starting at start, at least start + 1 */
+    private static int identifierEnd(final CharSequence text, final int start) {
+        final int length = text.length();
+        int i = start + 1;
+        while (i < length && isIdentifierChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierChar(final char c) {
+        return isWordChar(c) || c == '$';
+    }
+
+    private static boolean isWordChar(final char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '_';
+    }
+
+    private static boolean isAsciiLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+}
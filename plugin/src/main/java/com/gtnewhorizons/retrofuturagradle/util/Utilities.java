@@ -5,7 +5,6 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,12 +25,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 
@@ -57,6 +59,7 @@ import org.objectweb.asm.commons.ClassRemapper;
 import org.objectweb.asm.tree.ClassNode;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.gson.Gson;
@@ -65,6 +68,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.gtnewhorizons.retrofuturagradle.Constants;
+import com.gtnewhorizons.retrofuturagradle.mcp.MappingsService;
 import com.gtnewhorizons.retrofuturagradle.mcp.RemapSourceJarTask;
 import com.gtnewhorizons.retrofuturagradle.util.patching.ContextualPatch;
 import com.opencsv.CSVParser;
@@ -254,23 +258,34 @@ public final class Utilities {
         }
     }
 
+    /**
+     * Saves the in-memory jar, temporary jars are only written for debugging and are never compressed.
+     */
     public static File saveMemoryJar(Map<String, byte[]> loadedResources, Map<String, String> loadedSources,
             File target, boolean isTemporary) throws IOException {
         if (isTemporary && !Constants.DEBUG_NO_TMP_CLEANUP) {
             return null;
         }
-        try (FileOutputStream fos = new FileOutputStream(target);
-                BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ZipOutputStream zos = new ZipOutputStream(bos)) {
-            for (Map.Entry<String, byte[]> resource : loadedResources.entrySet()) {
-                zos.putNextEntry(new ZipEntry(resource.getKey()));
-                zos.write(resource.getValue());
-                zos.closeEntry();
-            }
-            for (Map.Entry<String, String> srcFile : loadedSources.entrySet()) {
-                zos.putNextEntry(new ZipEntry(srcFile.getKey()));
-                zos.write(srcFile.getValue().getBytes(StandardCharsets.UTF_8));
-                zos.closeEntry();
+        return saveMemoryJar(
+                loadedResources,
+                loadedSources,
+                target,
+                isTemporary ? JarCompression.STORE : JarCompression.DEFAULT);
+    }
+
+    /**
+     * Saves the in-memory jar with its entries sorted by name and a fixed timestamp, so that the same contents always
+     * produce a byte-identical jar regardless of the map types used.
+     */
+    public static File saveMemoryJar(Map<String, byte[]> loadedResources, Map<String, String> loadedSources,
+            File target, JarCompression compression) throws IOException {
+        final Map<String, byte[]> sortedEntries = new TreeMap<>(loadedResources);
+        for (Map.Entry<String, String> srcFile : loadedSources.entrySet()) {
+            sortedEntries.put(srcFile.getKey(), srcFile.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        try (JarWriter jar = new JarWriter(target, JarWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES, compression)) {
+            for (Map.Entry<String, byte[]> entry : sortedEntries.entrySet()) {
+                jar.write(entry.getKey(), entry.getValue());
             }
         }
         return target;
@@ -315,6 +330,61 @@ public final class Utilities {
         }
     }
 
+    /** Marks a directory copy made by {@link #linkDirectory(Path, Path)} */
+    private static final String LINKED_DIRECTORY_MARKER = ".rfg-linked";
+
+    /**
+     * Makes the given path show the contents of the target directory, replacing whatever was there before. Uses a
+     * symbolic link where the OS allows it, and a writable copy otherwise. Hard links are not used, as they share the
+     * read-only flag with the target files and deleting them with commons-io would clear it.
+     *
+     * @param target An existing directory
+     * @param link   The path to replace with a link to the target
+     */
+    public static void linkDirectory(final Path target, final Path link) throws IOException {
+        if (Files.isSymbolicLink(link) && Files.readSymbolicLink(link).equals(target)) {
+            return;
+        }
+        if (Files.isSymbolicLink(link)) {
+            Files.delete(link);
+        } else if (Files.exists(link)) {
+            FileUtils.deleteDirectory(link.toFile());
+        }
+        Files.createDirectories(link.getParent());
+        try {
+            Files.createSymbolicLink(link, target);
+            return;
+        } catch (UnsupportedOperationException | IOException e) {
+            LOGGER.info("Could not symlink {} to {}, copying its files instead", link, target, e);
+        }
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(target)) {
+            files = walk.collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            final Path linkedFile = link.resolve(target.relativize(file).toString());
+            if (Files.isDirectory(file)) {
+                Files.createDirectories(linkedFile);
+                continue;
+            }
+            Files.copy(file, linkedFile);
+            linkedFile.toFile().setWritable(true);
+        }
+        Files.createFile(link.resolve(LINKED_DIRECTORY_MARKER));
+    }
+
+    /**
+     * Removes a directory made by {@link #linkDirectory(Path, Path)}, so that writing into it can't modify the files
+     * it links to. Does nothing if the path is anything else.
+     */
+    public static void unlinkDirectory(final Path link) throws IOException {
+        if (Files.isSymbolicLink(link)) {
+            Files.delete(link);
+        } else if (Files.isRegularFile(link.resolve(LINKED_DIRECTORY_MARKER))) {
+            FileUtils.deleteDirectory(link.toFile());
+        }
+    }
+
     public static URL[] filesToURLArray(Collection<File> cpFiles) throws MalformedURLException {
         URL[] urls = new URL[cpFiles.size()];
         int idx = 0;
@@ -392,7 +462,7 @@ public final class Utilities {
         public final String param;
         public final String suffix;
         public final String type;
-        public int uses = 0;
+        public final AtomicInteger uses = new AtomicInteger();
 
         public GenericMapping(String zipEntry, String param, String suffix, String type) {
             this.zipEntry = zipEntry;
@@ -456,13 +526,25 @@ public final class Utilities {
         public final Map<String, Utilities.Mapping> methodMappings = new HashMap<>();
         public final Map<String, Utilities.Mapping> fieldMappings = new HashMap<>();
         public final Map<String, String> paramMappings = new HashMap<>();
-        // srg name -> mapping
-        public final ListMultimap<String, GenericMapping> genericMappings = MultimapBuilder.hashKeys().arrayListValues()
-                .build();
+        // zip entry -> srg name (or @init:constructor signature) -> mapping
+        public final Map<String, ListMultimap<String, GenericMapping>> genericMappings = new HashMap<>();
         // zip entry -> patch list
         public final ListMultimap<String, Utilities.GenericPatch> genericPatches = MultimapBuilder.hashKeys()
                 .arrayListValues().build();
 
+        public void addGenericMapping(String key, GenericMapping mapping) {
+            genericMappings
+                    .computeIfAbsent(mapping.zipEntry, k -> MultimapBuilder.hashKeys().arrayListValues().build())
+                    .put(key, mapping);
+        }
+
+        /**
+         * @return The generic mappings of a single source file, keyed by srg name or @init:constructor signature
+         */
+        public ListMultimap<String, GenericMapping> getGenericMappings(String zipEntry) {
+            return genericMappings.getOrDefault(zipEntry, ImmutableListMultimap.of());
+        }
+
         public String remapSimpleName(String name) {
             if (StringUtils.isBlank(name)) {
                 return "";
@@ -479,6 +561,13 @@ public final class Utilities {
             }
         }
 
+        /**
+         * @return A compact lookup table of the method, field and param mappings.
+         */
+        public SrgMappingTable toMappingTable() {
+            return SrgMappingTable.build(getCombinedMappings());
+        }
+
         /**
          * @return A combined map of method, field and param mappings.
          */
@@ -525,44 +614,60 @@ public final class Utilities {
                     }
                 }
             }
-            if (StringUtils.isNotBlank(genericsFilename)) {
-                URL genericsUrl = RemapSourceJarTask.class.getResource(genericsFilename);
-                URL genericPatchesUrl = RemapSourceJarTask.class
-                        .getResource(genericsFilename.replace("Fields", "Patches"));
-                try (CSVReader genReader = Utilities.createCsvReader(genericsUrl)) {
-                    for (String[] genLine : genReader) {
-                        // zipEntry, className, srg, mcp, param, type, suffix, comment
-                        String srg = genLine[2];
-                        int colon = srg.indexOf(':');
-                        if (colon >= 0) {
-                            srg = srg.substring(0, colon);
-                        }
-                        final String zipEntry = genLine[0];
-                        final String param = genLine[4];
-                        final String type = genLine[5];
-                        final String suffix = genLine[6];
-                        final String key = srg.equals("@init") ? (zipEntry + genLine[2]) : srg;
-                        mappings.genericMappings.put(key, new Utilities.GenericMapping(zipEntry, param, suffix, type));
+            loadGenericMappings(mappings, genericsFilename);
+            return mappings;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds the generic type mappings and patches bundled with RFG to the given mappings set.
+     *
+     * @param genericsFilename The resource name of the generic fields csv, the patches csv is found by replacing
+     *                         "Fields" with "Patches" in it.
+     */
+    public static void loadGenericMappings(MappingsSet mappings, @Nullable String genericsFilename) {
+        if (StringUtils.isBlank(genericsFilename)) {
+            return;
+        }
+        try {
+            URL genericsUrl = RemapSourceJarTask.class.getResource(genericsFilename);
+            URL genericPatchesUrl = RemapSourceJarTask.class.getResource(genericsFilename.replace("Fields", "Patches"));
+            try (CSVReader genReader = Utilities.createCsvReader(genericsUrl)) {
+                for (String[] genLine : genReader) {
+                    // zipEntry, className, srg, mcp, param, type, suffix, comment
+                    String srg = genLine[2];
+                    int colon = srg.indexOf(':');
+                    if (colon >= 0) {
+                        srg = srg.substring(0, colon);
                     }
+                    final String zipEntry = genLine[0];
+                    final String param = genLine[4];
+                    final String type = genLine[5];
+                    final String suffix = genLine[6];
+                    final String key = srg.equals("@init") ? genLine[2] : srg;
+                    mappings.addGenericMapping(key, new Utilities.GenericMapping(zipEntry, param, suffix, type));
                 }
-                try (CSVReader genReader = Utilities.createCsvReader(genericPatchesUrl)) {
-                    for (String[] genLine : genReader) {
-                        // zipEntry, className, containsFilter, toReplace, replaceWith, reason
-                        mappings.genericPatches.put(
-                                genLine[0],
-                                new Utilities.GenericPatch(genLine[0], genLine[2], genLine[3], genLine[4]));
-                    }
+            }
+            try (CSVReader genReader = Utilities.createCsvReader(genericPatchesUrl)) {
+                for (String[] genLine : genReader) {
+                    // zipEntry, className, containsFilter, toReplace, replaceWith, reason
+                    mappings.genericPatches.put(
+                            genLine[0],
+                            new Utilities.GenericPatch(genLine[0], genLine[2], genLine[3], genLine[4]));
                 }
             }
-            return mappings;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public static void loadSrgMcpMappings(VisitableMappingTree srgMcp, VisitableMappingTree notchSrg, File methodsCsv,
-            File fieldsCsv, @Nullable File paramsCsv, @Nullable Collection<File> extraParamsCsvs) throws IOException {
-        MappingsSet mappings = loadMappingCsvs(methodsCsv, fieldsCsv, paramsCsv, extraParamsCsvs, null);
+    public static void loadSrgMcpMappings(VisitableMappingTree srgMcp, VisitableMappingTree notchSrg,
+            MappingsService.CsvMappings mappings) throws IOException {
+        final Map<String, String> fieldNames = mappings.getFieldNames();
+        final Map<String, String> methodNames = mappings.getMethodNames();
+        final Map<String, String> paramNames = mappings.getParamNames();
 
         do {
             if (srgMcp.visitHeader()) {
@@ -576,28 +681,25 @@ public final class Utilities {
                         if (srgMcp.visitElementContent(MappedElementKind.CLASS)) {
                             for (MappingTree.FieldMapping notchSrgField : notchSrgClass.getFields()) {
                                 if (srgMcp.visitField(notchSrgField.getDstName(0), notchSrgField.getDstDesc(0))) {
-                                    Utilities.Mapping mapping = mappings.fieldMappings.get(notchSrgField.getDstName(0));
                                     srgMcp.visitDstName(
                                             MappedElementKind.FIELD,
                                             0,
-                                            mapping != null ? mapping.name : null);
+                                            fieldNames.get(notchSrgField.getDstName(0)));
                                     srgMcp.visitElementContent(MappedElementKind.FIELD);
                                     // TODO javadoc
                                 }
                             }
                             for (MappingTree.MethodMapping notchSrgMethod : notchSrgClass.getMethods()) {
                                 if (srgMcp.visitMethod(notchSrgMethod.getDstName(0), notchSrgMethod.getDstDesc(0))) {
-                                    Utilities.Mapping mapping = mappings.methodMappings
-                                            .get(notchSrgMethod.getDstName(0));
                                     srgMcp.visitDstName(
                                             MappedElementKind.METHOD,
                                             0,
-                                            mapping != null ? mapping.name : null);
+                                            methodNames.get(notchSrgMethod.getDstName(0)));
                                     // TODO javadoc
 
                                     if (srgMcp.visitElementContent(MappedElementKind.METHOD)) {
                                         for (MappingTree.MethodArgMapping notchSrgArg : notchSrgMethod.getArgs()) {
-                                            String dstName = mappings.paramMappings.get(notchSrgArg.getDstName(0));
+                                            String dstName = paramNames.get(notchSrgArg.getDstName(0));
                                             if (srgMcp.visitMethodArg(
                                                     -1,
                                                     notchSrgArg.getLvIndex(),
@@ -626,9 +728,17 @@ public final class Utilities {
      *         inheritance checks performed)
      */
     public static byte[] simpleRemapClass(byte[] classBytes, Map<String, String> mappings) {
+        return simpleRemapClass(classBytes, new SimpleSrgRemapper(mappings));
+    }
+
+    public static byte[] simpleRemapClass(byte[] classBytes, SrgMappingTable mappings) {
+        return simpleRemapClass(classBytes, new SimpleSrgRemapper(mappings));
+    }
+
+    private static byte[] simpleRemapClass(byte[] classBytes, SimpleSrgRemapper srgRemapper) {
         final ClassReader reader = new ClassReader(classBytes);
         final ClassWriter writer = new ClassWriter(0);
-        final ClassRemapper remapper = new ClassRemapper(writer, new SimpleSrgRemapper(mappings));
+        final ClassRemapper remapper = new ClassRemapper(writer, srgRemapper);
         reader.accept(remapper, 0);
         return writer.toByteArray();
     }
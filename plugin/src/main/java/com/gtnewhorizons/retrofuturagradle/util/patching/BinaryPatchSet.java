@@ -0,0 +1,216 @@
+package com.gtnewhorizons.retrofuturagradle.util.patching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.java.util.jar.Pack200;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.ImmutableMap;
+
+import lzma.sdk.lzma.Decoder;
+import lzma.streams.LzmaInputStream;
+
+/**
+ * The class patches of a Forge binpatch archive ({@code binpatches.pack.lzma}), decoded from the LZMA-compressed
+ * Pack200 jar into a compact binary form, so that repeated setups don't have to decompress and unpack it again.
+ */
+public final class BinaryPatchSet {
+
+    /** Bump whenever the serialized format or the decoding rules change */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x52464742; // RFGB
+
+    private static final Pattern PATCH_NAME_PATTERN = Pattern.compile("binpatch/merged/.*.binpatch");
+
+    private final Map<String, ClassPatch> patches;
+
+    private BinaryPatchSet(Map<String, ClassPatch> patches) {
+        this.patches = patches;
+    }
+
+    /**
+     * @return The patches keyed by the path of the class file they apply to, e.g. {@code net/minecraft/a.class}
+     */
+    public Map<String, ClassPatch> getPatches() {
+        return patches;
+    }
+
+    /**
+     * @return A digest of the given patch archive and the decoding format, to key the cached patch set with.
+     */
+    public static String digestPatchArchive(File patchesLzma) throws IOException {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        DigestUtils.updateDigest(digest, patchesLzma);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Decompresses and unpacks the given binpatch archive.
+     */
+    public static BinaryPatchSet decode(File patchesLzma) throws IOException {
+        final byte[] patchesJarBytes;
+        final byte[] decompressedPatchesLzma;
+        try (LzmaInputStream decompressed = new LzmaInputStream(
+                FileUtils.openInputStream(patchesLzma),
+                new Decoder())) {
+            decompressedPatchesLzma = IOUtils.toByteArray(decompressed);
+        }
+        try (ByteArrayInputStream decompressed = new ByteArrayInputStream(decompressedPatchesLzma);
+                ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+                JarOutputStream jarOut = new JarOutputStream(jarBytes);) {
+            Pack200.newUnpacker().unpack(decompressed, jarOut);
+            jarOut.flush();
+            patchesJarBytes = jarBytes.toByteArray();
+        }
+
+        final ImmutableMap.Builder<String, ClassPatch> mapBuilder = new ImmutableMap.Builder<>();
+        try (JarInputStream jis = new JarInputStream(new ByteArrayInputStream(patchesJarBytes))) {
+            JarEntry entry;
+            while ((entry = jis.getNextJarEntry()) != null) {
+                if (PATCH_NAME_PATTERN.matcher(entry.getName()).matches()) {
+                    final ClassPatch patch = readPatch(IOUtils.toByteArray(jis));
+                    mapBuilder.put(patch.getPatchedFile(), patch);
+                } else {
+                    jis.closeEntry();
+                }
+            }
+        }
+        return new BinaryPatchSet(mapBuilder.buildOrThrow());
+    }
+
+    private static ClassPatch readPatch(byte[] rawPatchBytes) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(rawPatchBytes))) {
+            final String name = input.readUTF();
+            final String sourceClassName = input.readUTF();
+            final String targetClassName = input.readUTF();
+            final boolean checksumExists = input.readBoolean();
+            final int inputChecksum;
+            if (checksumExists) {
+                inputChecksum = input.readInt();
+            } else {
+                inputChecksum = 0;
+            }
+            final int patchLength = input.readInt();
+            final byte[] patchBytes = new byte[patchLength];
+            input.readFully(patchBytes);
+
+            return new ClassPatch(name, sourceClassName, targetClassName, checksumExists, inputChecksum, patchBytes);
+        }
+    }
+
+    public void write(File target) throws IOException {
+        // Sorted so that the same archive always produces the same file
+        final Map<String, ClassPatch> sortedPatches = new TreeMap<>(patches);
+        try (final OutputStream os = Files.newOutputStream(target.toPath());
+                final BufferedOutputStream bos = new BufferedOutputStream(os);
+                final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sortedPatches.size());
+            for (ClassPatch patch : sortedPatches.values()) {
+                out.writeUTF(patch.name);
+                out.writeUTF(patch.sourceClassName);
+                out.writeUTF(patch.targetClassName);
+                out.writeBoolean(patch.existsAtTarget);
+                out.writeInt(patch.inputChecksum);
+                out.writeInt(patch.patch.length);
+                out.write(patch.patch);
+            }
+        }
+    }
+
+    /**
+     * @return The patch set stored in the given file, or null if it was written by an incompatible version.
+     */
+    public static BinaryPatchSet read(File source) throws IOException {
+        try (final InputStream is = Files.newInputStream(source.toPath());
+                final BufferedInputStream bis = new BufferedInputStream(is);
+                final DataInputStream in = new DataInputStream(bis)) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final int patchCount = in.readInt();
+            final ImmutableMap.Builder<String, ClassPatch> mapBuilder = ImmutableMap
+                    .builderWithExpectedSize(patchCount);
+            for (int i = 0; i < patchCount; i++) {
+                final String name = in.readUTF();
+                final String sourceClassName = in.readUTF();
+                final String targetClassName = in.readUTF();
+                final boolean existsAtTarget = in.readBoolean();
+                final int inputChecksum = in.readInt();
+                final byte[] patchBytes = new byte[in.readInt()];
+                in.readFully(patchBytes);
+                final ClassPatch patch = new ClassPatch(
+                        name,
+                        sourceClassName,
+                        targetClassName,
+                        existsAtTarget,
+                        inputChecksum,
+                        patchBytes);
+                mapBuilder.put(patch.getPatchedFile(), patch);
+            }
+            return new BinaryPatchSet(mapBuilder.buildOrThrow());
+        }
+    }
+
+    public static final class ClassPatch {
+
+        public final String name;
+        public final String sourceClassName;
+        public final String targetClassName;
+        public final boolean existsAtTarget;
+        public final byte[] patch;
+        public final int inputChecksum;
+
+        public ClassPatch(String name, String sourceClassName, String targetClassName, boolean existsAtTarget,
+                int inputChecksum, byte[] patch) {
+            this.name = name;
+            this.sourceClassName = sourceClassName;
+            this.targetClassName = targetClassName;
+            this.existsAtTarget = existsAtTarget;
+            this.inputChecksum = inputChecksum;
+            this.patch = patch;
+        }
+
+        /**
+         * @return The path of the class file this patch applies to
+         */
+        public String getPatchedFile() {
+            return sourceClassName.replace('.', '/') + ".class";
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s : %s => %s (%b) size %d",
+                    name,
+                    sourceClassName,
+                    targetClassName,
+                    existsAtTarget,
+                    patch.length);
+        }
+    }
+}
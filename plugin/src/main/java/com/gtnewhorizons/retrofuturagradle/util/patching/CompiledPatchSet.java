@@ -0,0 +1,331 @@
+package com.gtnewhorizons.retrofuturagradle.util.patching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.iterators.EnumerationIterator;
+import org.apache.commons.collections4.iterators.IteratorIterable;
+import org.apache.commons.io.FileUtils;
+
+import com.cloudbees.diff.Hunk;
+import com.cloudbees.diff.PatchException;
+import com.gtnewhorizons.retrofuturagradle.util.Utilities;
+
+/**
+ * A set of patch files parsed ahead of time into a compact binary form, so that repeated setups can apply them without
+ * re-reading and re-parsing the unified diffs. Context and removal lines are additionally stored in their access
+ * canonicalized form together with a hash of it, which is what {@link ContextualPatch} compares against when
+ * searching for hunk locations.
+ */
+public final class CompiledPatchSet {
+
+    /** Bump whenever the serialized format or the canonicalization rules change */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x52464750; // RFGP
+
+    private final List<Entry> entries;
+
+    private CompiledPatchSet(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return The compiled patch files, sorted by their name.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * A single compiled patch file, which can contain patches for multiple target files.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final List<ContextualPatch.SinglePatch> patches;
+        private final IdentityHashMap<Hunk, CompiledHunk> compiledHunks;
+
+        private Entry(String name, List<ContextualPatch.SinglePatch> patches) {
+            this.name = name;
+            this.patches = patches;
+            this.compiledHunks = new IdentityHashMap<>();
+            for (ContextualPatch.SinglePatch patch : patches) {
+                for (Hunk hunk : patch.hunks) {
+                    compiledHunks.put(hunk, new CompiledHunk(hunk));
+                }
+            }
+        }
+
+        private Entry(String name, List<ContextualPatch.SinglePatch> patches,
+                IdentityHashMap<Hunk, CompiledHunk> compiledHunks) {
+            this.name = name;
+            this.patches = patches;
+            this.compiledHunks = compiledHunks;
+        }
+
+        /**
+         * @return The path of the patch file relative to the root of the archive or directory it was compiled from.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param context The context to apply the patch to
+         * @return A fresh patch object ready to be configured and applied, sharing the parsed hunks of this entry.
+         */
+        public ContextualPatch createPatch(ContextualPatch.IContextProvider context) {
+            return ContextualPatch.create(patches, compiledHunks, context);
+        }
+    }
+
+    /**
+     * Precomputed canonical forms of the lines of a hunk that have to match the target file.
+     */
+    static final class CompiledHunk {
+
+        private final String[] canonicalLines;
+        private final int[] lineHashes;
+
+        CompiledHunk(Hunk hunk) {
+            final int lineCount = hunk.lines.size();
+            canonicalLines = new String[lineCount];
+            lineHashes = new int[lineCount];
+            for (int i = 0; i < lineCount; i++) {
+                final String line = hunk.lines.get(i);
+                if (line.charAt(0) != '+') {
+                    canonicalLines[i] = ContextualPatch.canonicalizeAccess(line.substring(1));
+                    lineHashes[i] = canonicalLines[i].hashCode();
+                }
+            }
+        }
+
+        CompiledHunk(String[] canonicalLines, int[] lineHashes) {
+            this.canonicalLines = canonicalLines;
+            this.lineHashes = lineHashes;
+        }
+
+        boolean matches(int lineIndex, String canonicalTarget) {
+            return lineHashes[lineIndex] == canonicalTarget.hashCode()
+                    && canonicalLines[lineIndex].equals(canonicalTarget);
+        }
+    }
+
+    /**
+     * Parses the given patch files into a compiled patch set.
+     *
+     * @param patchTexts Map of patch file name to its contents
+     */
+    public static CompiledPatchSet compile(Map<String, String> patchTexts) {
+        final TreeMap<String, String> sorted = new TreeMap<>(patchTexts);
+        final List<Entry> entries = new ArrayList<>(sorted.size());
+        for (Map.Entry<String, String> patchText : sorted.entrySet()) {
+            try {
+                final List<ContextualPatch.SinglePatch> patches = ContextualPatch.create(patchText.getValue(), null)
+                        .parse();
+                entries.add(new Entry(patchText.getKey(), patches));
+            } catch (IOException | PatchException e) {
+                throw new RuntimeException("Could not parse patch " + patchText.getKey(), e);
+            }
+        }
+        return new CompiledPatchSet(entries);
+    }
+
+    /**
+     * Reads all patch files from a patch bundle, which can be a zip/jar archive, a directory or a single patch file.
+     *
+     * @param bundle The bundle to read
+     * @param filter Only files whose name contains this string are included, or null to include all files
+     * @return Map of file path relative to the bundle root to its contents
+     */
+    public static Map<String, String> readPatchBundle(File bundle, String filter) throws IOException {
+        final TreeMap<String, String> texts = new TreeMap<>();
+        if (bundle.isDirectory()) {
+            final Path root = bundle.toPath();
+            for (File file : new IteratorIterable<>(FileUtils.iterateFiles(bundle, null, true))) {
+                if (filter != null && !file.getName().contains(filter)) {
+                    continue;
+                }
+                final String relPath = root.relativize(file.toPath()).toString().replace('\\', '/');
+                texts.put(relPath, FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+            }
+        } else if (isArchive(bundle)) {
+            try (final ZipFile zf = new ZipFile(bundle)) {
+                for (ZipEntry entry : new IteratorIterable<>(new EnumerationIterator<>(zf.entries()))) {
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    final String entryFileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                    if (filter != null && !entryFileName.contains(filter)) {
+                        continue;
+                    }
+                    texts.put(
+                            entry.getName(),
+                            new String(Utilities.readZipEntry(zf, entry), StandardCharsets.UTF_8));
+                }
+            }
+        } else if (filter == null || bundle.getName().contains(filter)) {
+            texts.put(bundle.getName(), FileUtils.readFileToString(bundle, StandardCharsets.UTF_8));
+        }
+        return texts;
+    }
+
+    /**
+     * Computes the cache key of a patch bundle, covering the format version, the file names and their contents.
+     */
+    public static String digestPatchBundle(File bundle, String filter) throws IOException {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        digest.update(String.valueOf(filter).getBytes(StandardCharsets.UTF_8));
+        if (bundle.isDirectory()) {
+            final Path root = bundle.toPath();
+            final TreeMap<String, File> files = new TreeMap<>();
+            for (File file : new IteratorIterable<>(FileUtils.iterateFiles(bundle, null, true))) {
+                files.put(root.relativize(file.toPath()).toString().replace('\\', '/'), file);
+            }
+            for (Map.Entry<String, File> file : files.entrySet()) {
+                digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update(DigestUtils.sha256(FileUtils.readFileToByteArray(file.getValue())));
+            }
+        } else {
+            digest.update(bundle.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update(DigestUtils.sha256(FileUtils.readFileToByteArray(bundle)));
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    public static boolean isArchive(File bundle) {
+        return bundle.getName().endsWith(".zip") || bundle.getName().endsWith(".jar");
+    }
+
+    public void write(File target) throws IOException {
+        try (final OutputStream os = Files.newOutputStream(target.toPath());
+                final BufferedOutputStream bos = new BufferedOutputStream(os);
+                final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeString(out, entry.name);
+                out.writeInt(entry.patches.size());
+                for (ContextualPatch.SinglePatch patch : entry.patches) {
+                    writeNullableString(out, patch.targetPath);
+                    out.writeByte(patch.mode == null ? -1 : patch.mode.ordinal());
+                    out.writeBoolean(patch.noEndingNewline);
+                    out.writeBoolean(patch.binary);
+                    out.writeInt(patch.hunks.length);
+                    for (Hunk hunk : patch.hunks) {
+                        final CompiledHunk compiled = entry.compiledHunks.get(hunk);
+                        out.writeInt(hunk.baseStart);
+                        out.writeInt(hunk.baseCount);
+                        out.writeInt(hunk.modifiedStart);
+                        out.writeInt(hunk.modifiedCount);
+                        out.writeInt(hunk.lines.size());
+                        for (int i = 0; i < hunk.lines.size(); i++) {
+                            writeString(out, hunk.lines.get(i));
+                            writeNullableString(out, compiled.canonicalLines[i]);
+                            out.writeInt(compiled.lineHashes[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The patch set stored in the given file, or null if it was written by an incompatible version.
+     */
+    public static CompiledPatchSet read(File source) throws IOException {
+        try (final InputStream is = Files.newInputStream(source.toPath());
+                final BufferedInputStream bis = new BufferedInputStream(is);
+                final DataInputStream in = new DataInputStream(bis)) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final ContextualPatch.Mode[] modes = ContextualPatch.Mode.values();
+            final int entryCount = in.readInt();
+            final List<Entry> entries = new ArrayList<>(entryCount);
+            for (int e = 0; e < entryCount; e++) {
+                final String name = readString(in);
+                final int patchCount = in.readInt();
+                final List<ContextualPatch.SinglePatch> patches = new ArrayList<>(patchCount);
+                final IdentityHashMap<Hunk, CompiledHunk> compiledHunks = new IdentityHashMap<>();
+                for (int p = 0; p < patchCount; p++) {
+                    final ContextualPatch.SinglePatch patch = new ContextualPatch.SinglePatch();
+                    patch.targetPath = readNullableString(in);
+                    final byte mode = in.readByte();
+                    patch.mode = mode < 0 ? null : modes[mode];
+                    patch.noEndingNewline = in.readBoolean();
+                    patch.binary = in.readBoolean();
+                    patch.hunks = new Hunk[in.readInt()];
+                    for (int h = 0; h < patch.hunks.length; h++) {
+                        final Hunk hunk = new Hunk();
+                        hunk.baseStart = in.readInt();
+                        hunk.baseCount = in.readInt();
+                        hunk.modifiedStart = in.readInt();
+                        hunk.modifiedCount = in.readInt();
+                        final int lineCount = in.readInt();
+                        final List<String> lines = new ArrayList<>(lineCount);
+                        final String[] canonicalLines = new String[lineCount];
+                        final int[] lineHashes = new int[lineCount];
+                        for (int i = 0; i < lineCount; i++) {
+                            lines.add(readString(in));
+                            canonicalLines[i] = readNullableString(in);
+                            lineHashes[i] = in.readInt();
+                        }
+                        hunk.lines = lines;
+                        patch.hunks[h] = hunk;
+                        compiledHunks.put(hunk, new CompiledHunk(canonicalLines, lineHashes));
+                    }
+                    patches.add(patch);
+                }
+                entries.add(new Entry(name, patches, compiledHunks));
+            }
+            return new CompiledPatchSet(entries);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+}
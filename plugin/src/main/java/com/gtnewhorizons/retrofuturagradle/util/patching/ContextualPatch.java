@@ -35,6 +35,7 @@ import java.io.PrintWriter;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -69,10 +70,14 @@ public final class ContextualPatch {
     private final File suggestedContext;
 
     private String patchString;
+    private List<SinglePatch> compiledPatches;
+    private IdentityHashMap<Hunk, CompiledPatchSet.CompiledHunk> compiledHunks;
+    private IdentityHashMap<String, String> canonicalTargetCache;
     private IContextProvider contextProvider;
     private int maxFuzz = 0;
     private boolean c14nWhitespace = false;
     private boolean c14nAccess = false;
+    private boolean skipMissingTargets = false;
 
     private File context;
     private BufferedReader patchReader;
@@ -95,6 +100,17 @@ public final class ContextualPatch {
         suggestedContext = null;
     }
 
+    /**
+     * Creates a patch from already parsed patch data, skipping the diff parsing step entirely.
+     */
+    static ContextualPatch create(List<SinglePatch> compiledPatches,
+            IdentityHashMap<Hunk, CompiledPatchSet.CompiledHunk> compiledHunks, IContextProvider context) {
+        final ContextualPatch patch = new ContextualPatch((String) null, context);
+        patch.compiledPatches = compiledPatches;
+        patch.compiledHunks = compiledHunks;
+        return patch;
+    }
+
     private ContextualPatch(File patchFile, File context) {
         this.patchFile = patchFile;
         this.suggestedContext = context;
@@ -115,6 +131,15 @@ public final class ContextualPatch {
         return this;
     }
 
+    /**
+     * @param skip true to skip the patches of files missing from the context provider instead of failing them, for
+     *             patching a subset of the sources
+     */
+    public ContextualPatch setSkipMissingTargets(boolean skip) {
+        this.skipMissingTargets = skip;
+        return this;
+    }
+
     /**
      * @param dryRun true if the method should not make any modifications to files, false otherwise
      * @return List of patch reports. Never null, may be empty.
@@ -123,6 +148,30 @@ public final class ContextualPatch {
      */
     public List<PatchReport> patch(boolean dryRun) throws PatchException, IOException {
         List<PatchReport> report = new ArrayList<PatchReport>();
+        final List<SinglePatch> patches = (compiledPatches != null) ? compiledPatches : parse();
+        computeContext(patches);
+        for (SinglePatch patch : patches) {
+            try {
+                report.add(applyPatch(patch, dryRun));
+                // report.add(new PatchReport(patch.targetFile, computeBackup(patch.targetFile), patch.binary,
+                // PatchStatus.Patched, null));
+            } catch (Exception e) {
+                report.add(
+                        new PatchReport(
+                                patch.targetPath,
+                                patch.binary,
+                                PatchStatus.Failure,
+                                e,
+                                new ArrayList<HunkReport>()));
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Parses the patch file or string into its per-file patches without applying them.
+     */
+    List<SinglePatch> parse() throws PatchException, IOException {
         init();
         try {
             patchLine = patchReader.readLine();
@@ -134,29 +183,12 @@ public final class ContextualPatch {
                 }
                 patches.add(patch);
             }
-            computeContext(patches);
-            for (SinglePatch patch : patches) {
-                try {
-                    report.add(applyPatch(patch, dryRun));
-                    // report.add(new PatchReport(patch.targetFile, computeBackup(patch.targetFile), patch.binary,
-                    // PatchStatus.Patched, null));
-                } catch (Exception e) {
-                    report.add(
-                            new PatchReport(
-                                    patch.targetPath,
-                                    patch.binary,
-                                    PatchStatus.Failure,
-                                    e,
-                                    new ArrayList<HunkReport>()));
-                }
-            }
-            return report;
+            return patches;
         } finally {
-            if (patchReader != null) {
-                try {
-                    patchReader.close();
-                } catch (IOException e) {}
-            }
+            try {
+                patchReader.close();
+            } catch (IOException e) {}
+            patchReader = null;
         }
     }
 
@@ -190,6 +222,7 @@ public final class ContextualPatch {
 
     private PatchReport applyPatch(SinglePatch patch, boolean dryRun) throws IOException, PatchException {
         lastPatchedLine = 1;
+        canonicalTargetCache = null;
         List<HunkReport> ret = new ArrayList<HunkReport>();
 
         if (this.contextProvider != null) {
@@ -204,6 +237,12 @@ public final class ContextualPatch {
                     return new PatchReport(patch.targetPath, patch.binary, PatchStatus.Skipped, null, ret);
                 }
             } else if (target == null) {
+                if (skipMissingTargets) {
+                    for (int x = 0; x < patch.hunks.length; x++) {
+                        ret.add(new HunkReport(PatchStatus.Skipped, null, 0, 0, x));
+                    }
+                    return new PatchReport(patch.targetPath, patch.binary, PatchStatus.Skipped, null, ret);
+                }
                 target = new ArrayList<String>();
             }
 
@@ -384,6 +423,9 @@ public final class ContextualPatch {
         int startIdx = idx;
         idx--; // indices in the target list are 0-based
         int hunkIdx = -1;
+        final CompiledPatchSet.CompiledHunk compiled = (compiledHunks != null && c14nAccess && !c14nWhitespace)
+                ? compiledHunks.get(hunk)
+                : null;
         for (String hunkLine : hunk.lines) {
             hunkIdx++;
             boolean isAddition = isAdditionLine(hunkLine);
@@ -395,7 +437,8 @@ public final class ContextualPatch {
                         throw new PatchException("Unapplicable hunk #" + hunkID + " @@ " + startIdx);
                     }
                 }
-                boolean match = similar(target.get(idx), hunkLine.substring(1), hunkLine.charAt(0));
+                boolean match = (compiled != null) ? compiled.matches(hunkIdx, canonicalTarget(target.get(idx)))
+                        : similar(target.get(idx), hunkLine.substring(1), hunkLine.charAt(0));
                 if (!match && fuzz != 0 && !isRemovalLine(hunkLine)) {
                     match = (hunkIdx < fuzz || hunkIdx >= hunk.lines.size() - fuzz ? true : match);
                 }
@@ -851,7 +894,7 @@ public final class ContextualPatch {
         return new File(context, patch.targetPath);
     }
 
-    private static class SinglePatch {
+    static class SinglePatch {
 
         // String targetIndex;
         String targetPath;
@@ -1028,13 +1071,46 @@ public final class ContextualPatch {
         }
     }
 
-    private boolean isAccess(String data) {
+    private String canonicalTarget(String line) {
+        if (canonicalTargetCache == null) {
+            canonicalTargetCache = new IdentityHashMap<>();
+        }
+        return canonicalTargetCache.computeIfAbsent(line, ContextualPatch::canonicalizeAccess);
+    }
+
+    /**
+     * Computes a canonical form of a line such that two lines are {@link #similar(String, String, char) similar} under
+     * access canonicalization (without whitespace canonicalization) if and only if their canonical forms are equal.
+     * Access modifiers are dropped, except that the number of them after the last other token is kept: similar only
+     * skips those in pairs, so {@code a final} doesn't match {@code a} but does match {@code a public}.
+     */
+    static String canonicalizeAccess(String line) {
+        final String[] parts = line.split(" ");
+        final StringBuilder joined = new StringBuilder(line.length());
+        int count = 0;
+        int trailingAccess = 0;
+        for (String part : parts) {
+            if (isAccess(part)) {
+                trailingAccess++;
+                continue;
+            }
+            trailingAccess = 0;
+            if (count > 0) {
+                joined.append(' ');
+            }
+            joined.append(isLabel(part) ? "label" : part);
+            count++;
+        }
+        return count + ":" + trailingAccess + ":" + joined;
+    }
+
+    private static boolean isAccess(String data) {
         return data.equalsIgnoreCase("public") || data.equalsIgnoreCase("private")
                 || data.equalsIgnoreCase("protected")
                 || data.equalsIgnoreCase("final");
     }
 
-    private boolean isLabel(String data) // Damn FernFlower
+    private static boolean isLabel(String data) // Damn FernFlower
     {
         return data.startsWith("label");
     }
@@ -0,0 +1,51 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+
+import org.junit.jupiter.api.Test;
+
+import com.gtnewhorizons.retrofuturagradle.util.patching.BinaryPatchSet;
+
+/**
+ * Checks that binary patches write the patched class bytes.
+ */
+class BinaryPatchJarTaskTest {
+
+    @Test
+    void patchedBytesAreWritten() throws IOException {
+        final byte[] input = "Hello, world!".getBytes(StandardCharsets.US_ASCII);
+        // GDiff v4: copy "Hello, ", insert "patch", copy "!"
+        final byte[] gdiff = new byte[] { (byte) 0xD1, (byte) 0xFF, (byte) 0xD1, (byte) 0xFF, 4, //
+                (byte) 249, 0, 0, 7, //
+                5, 'p', 'a', 't', 'c', 'h', //
+                (byte) 249, 0, 12, 1, //
+                0 };
+        final Adler32 hasher = new Adler32();
+        hasher.update(input, 0, input.length);
+        final BinaryPatchSet.ClassPatch patch = new BinaryPatchSet.ClassPatch(
+                "a",
+                "a",
+                "a",
+                true,
+                (int) hasher.getValue(),
+                gdiff);
+
+        final byte[] output = BinaryPatchJarTask.applyPatch("a.class", input, patch);
+
+        assertFalse(Arrays.equals(input, output));
+        assertEquals("Hello, patch!", new String(output, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void mismatchedChecksumFails() {
+        final byte[] input = "Hello, world!".getBytes(StandardCharsets.US_ASCII);
+        final BinaryPatchSet.ClassPatch patch = new BinaryPatchSet.ClassPatch("a", "a", "a", true, 0, new byte[0]);
+
+        assertThrows(RuntimeException.class, () -> BinaryPatchJarTask.applyPatch("a.class", input, patch));
+    }
+}
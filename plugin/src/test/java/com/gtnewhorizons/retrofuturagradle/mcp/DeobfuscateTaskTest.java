@@ -0,0 +1,252 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+/**
+ * Checks that the single-pass deobfuscator produces the same classes as the SpecialSource -> MCInjector -> cleanup
+ * chain.
+ */
+class DeobfuscateTaskTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void singlePassMatchesLegacyPipeline() throws IOException {
+        final File inputJar = tempDir.resolve("obf.jar").toFile();
+        writeObfuscatedJar(inputJar);
+        final File srg = writeFile(
+                "notch-srg.srg",
+                "CL: a net/minecraft/src/Alpha",
+                "CL: a$1 net/minecraft/src/Alpha$1",
+                "CL: b net/minecraft/src/Beta",
+                "FD: a/a net/minecraft/src/Alpha/field_1000_a",
+                "MD: a/a (JI)I net/minecraft/src/Alpha/func_1001_a (JI)I",
+                "MD: a/b ()V net/minecraft/src/Alpha/func_1002_b ()V",
+                "MD: a/c (Lb;)V net/minecraft/src/Alpha/func_1003_c (Lnet/minecraft/src/Beta;)V");
+        final File exc = writeFile(
+                "srg.exc",
+                "max_constructor_index=2000",
+                "net/minecraft/src/Alpha=CL_00000001",
+                "net/minecraft/src/Beta=CL_00000002",
+                "net/minecraft/src/Alpha.<init>(I)V=|p_i1004_1_",
+                "net/minecraft/src/Alpha.func_1001_a(JI)I=java/io/IOException|");
+        final File json = writeFile(
+                "exceptor.json",
+                "{",
+                "  \"net/minecraft/src/Alpha$1\": {",
+                "    \"enclosingMethod\": {",
+                "      \"owner\": \"net/minecraft/src/Alpha\", \"name\": \"func_1002_b\", \"desc\": \"()V\"",
+                "    },",
+                "    \"innerClasses\": [ { \"inner_class\": \"net/minecraft/src/Alpha$1\", \"access\": \"8\" } ]",
+                "  },",
+                "  \"net/minecraft/src/Alpha\": {",
+                "    \"innerClasses\": [ { \"inner_class\": \"net/minecraft/src/Alpha$1\", \"access\": \"8\" } ]",
+                "  }",
+                "}");
+        final File at = writeFile(
+                "test_at.cfg",
+                "public net.minecraft.src.Alpha field_1000_a # the field",
+                "public-f net.minecraft.src.Alpha func_1002_b()V",
+                "public net.minecraft.src.Alpha$1");
+
+        final Project project = ProjectBuilder.builder().withProjectDir(tempDir.resolve("project").toFile()).build();
+        final List<File> outputs = new ArrayList<>();
+        for (boolean legacy : new boolean[] { true, false }) {
+            final File output = tempDir.resolve(legacy ? "legacy.jar" : "singlepass.jar").toFile();
+            final DeobfuscateTask task = project.getTasks()
+                    .register(legacy ? "deobfLegacy" : "deobfSinglePass", DeobfuscateTask.class, t -> {
+                        t.getInputJar().set(inputJar);
+                        t.getOutputJar().set(output);
+                        t.getSrgFile().set(srg);
+                        t.getExceptorCfg().set(exc);
+                        t.getExceptorJson().set(json);
+                        t.getAccessTransformerFiles().from(at);
+                        t.getIsApplyingMarkers().set(true);
+                        t.getIsStrippingSynthetics().set(true);
+                        t.getIsUsingLegacyPipeline().set(legacy);
+                    }).get();
+            task.processJar();
+            outputs.add(output);
+        }
+
+        try (final ZipFile legacyJar = new ZipFile(outputs.get(0));
+                final ZipFile singlePassJar = new ZipFile(outputs.get(1))) {
+            final List<String> legacyEntries = entryNames(legacyJar);
+            assertEquals(legacyEntries, entryNames(singlePassJar));
+            assertTrue(legacyEntries.contains("net/minecraft/src/Alpha.class"));
+            for (String name : legacyEntries) {
+                final byte[] expected = IOUtils.toByteArray(legacyJar.getInputStream(legacyJar.getEntry(name)));
+                final byte[] actual = IOUtils.toByteArray(singlePassJar.getInputStream(singlePassJar.getEntry(name)));
+                if (name.endsWith(".class")) {
+                    assertEquals(disassemble(expected), disassemble(actual), name);
+                } else {
+                    assertArrayEquals(expected, actual, name);
+                }
+            }
+        }
+    }
+
+    private File writeFile(String name, String... lines) throws IOException {
+        final File file = tempDir.resolve(name).toFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> entryNames(ZipFile jar) {
+        final List<String> names = new ArrayList<>();
+        for (ZipEntry entry : Collections.list(jar.entries())) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static String disassemble(byte[] classBytes) {
+        final StringWriter text = new StringWriter();
+        new ClassReader(classBytes).accept(new TraceClassVisitor(new PrintWriter(text)), 0);
+        return text.toString();
+    }
+
+    private static void writeObfuscatedJar(File target) throws IOException {
+        try (final FileOutputStream fos = new FileOutputStream(target);
+                final ZipOutputStream out = new ZipOutputStream(fos)) {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("b.class"));
+            out.write(classB());
+            out.putNextEntry(new ZipEntry("a.class"));
+            out.write(classA());
+            out.putNextEntry(new ZipEntry("a$1.class"));
+            out.write(classA1());
+            out.putNextEntry(new ZipEntry("assets/test.txt"));
+            out.write("resource".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] classA() {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER | ACC_ABSTRACT, "a", null, "java/lang/Object", null);
+        cw.visitField(ACC_PRIVATE, "a", "I", null, null).visitEnd();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(I)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, "a", "a", "I");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        // No exceptor entry, numbered after the Beta constructor as b.class comes first in the jar
+        mv = cw.visitMethod(ACC_PROTECTED, "<init>", "(J)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_0);
+        mv.visitMethodInsn(INVOKESPECIAL, "a", "<init>", "(I)V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC, "a", "(JI)I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PRIVATE | ACC_FINAL, "b", "()V", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, "a$1");
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, "a$1", "<init>", "()V", false);
+        mv.visitInsn(POP);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_STATIC | ACC_SYNTHETIC, "c", "(Lb;)V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "d", "(I)V", null, null);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] classA1() {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_SUPER, "a$1", null, "java/lang/Object", new String[] { "java/lang/Runnable" });
+        MethodVisitor mv = cw.visitMethod(0, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC, "run", "()V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] classB() {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER, "b", null, "a", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/String;J)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_0);
+        mv.visitMethodInsn(INVOKESPECIAL, "a", "<init>", "(I)V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, "b", "a", "I");
+        mv.visitInsn(POP);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC, "a", "(JI)I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, "a", "c", "(Lb;)V", false);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        mv = cw.visitMethod(ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", null, null);
+        mv.visitCode();
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
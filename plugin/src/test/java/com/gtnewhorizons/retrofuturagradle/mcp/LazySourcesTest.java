@@ -0,0 +1,64 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gtnewhorizons.retrofuturagradle.util.JarWriter;
+
+/**
+ * Checks the class name handling and per-class cache keys of the lazy sources mode.
+ */
+class LazySourcesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void classNamesAreNormalized() {
+        assertEquals("net/minecraft/client/Minecraft", LazySources.toTopLevelClass("net.minecraft.client.Minecraft"));
+        assertEquals("net/minecraft/client/Minecraft", LazySources.toTopLevelClass("net/minecraft/client/Minecraft"));
+        assertEquals("net/minecraft/client/Minecraft", LazySources.toTopLevelClass("net.minecraft.client.Minecraft$1"));
+        assertEquals(
+                "net/minecraft/client/Minecraft",
+                LazySources.toTopLevelClass("net/minecraft/client/Minecraft.class"));
+        assertEquals("net/minecraft/client/Minecraft.java", LazySources.toSourcePath("net/minecraft/client/Minecraft"));
+    }
+
+    @Test
+    void keysCoverInnerClasses() throws IOException {
+        final File jarA = writeJar("a.jar", "inner");
+        final File jarB = writeJar("b.jar", "changed inner");
+        final Map<String, String> keysA = LazySources
+                .computeClassKeys(jarA, "digest", Arrays.asList("pkg/Outer", "pkg/Other", "pkg/Missing"));
+        final Map<String, String> keysB = LazySources
+                .computeClassKeys(jarB, "digest", Arrays.asList("pkg/Outer", "pkg/Other", "pkg/Missing"));
+
+        assertEquals(keysA.keySet(), keysB.keySet());
+        assertFalse(keysA.containsKey("pkg/Missing"));
+        assertNotEquals(keysA.get("pkg/Outer"), keysB.get("pkg/Outer"));
+        assertEquals(keysA.get("pkg/Other"), keysB.get("pkg/Other"));
+        assertNotEquals(
+                keysA.get("pkg/Other"),
+                LazySources.computeClassKeys(jarA, "other digest", Arrays.asList("pkg/Other")).get("pkg/Other"));
+        assertTrue(LazySources.hasClasses(jarA));
+    }
+
+    private File writeJar(String name, String innerContents) throws IOException {
+        final File jar = tempDir.resolve(name).toFile();
+        try (final JarWriter out = new JarWriter(jar)) {
+            out.write("pkg/Outer.class", "outer".getBytes(StandardCharsets.UTF_8));
+            out.write("pkg/Outer$Inner.class", innerContents.getBytes(StandardCharsets.UTF_8));
+            out.write("pkg/Other.class", "other".getBytes(StandardCharsets.UTF_8));
+        }
+        return jar;
+    }
+}
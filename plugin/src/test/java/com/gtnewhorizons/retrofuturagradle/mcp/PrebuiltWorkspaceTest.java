@@ -0,0 +1,62 @@
+package com.gtnewhorizons.retrofuturagradle.mcp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a published prebuilt workspace can be resolved back from a local file repository.
+ */
+class PrebuiltWorkspaceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void publishedWorkspaceResolves() throws IOException {
+        final File repository = tempDir.resolve("repo").toFile();
+        final File patchedMcJar = writeFile("recompiled_minecraft.jar", "classes");
+        final File sourcesJar = writeFile("mcp_patched_minecraft-sources.jar", "sources");
+        final File at = writeFile("test_at.cfg", "public net.minecraft.src.Alpha");
+
+        final Project project = ProjectBuilder.builder().withProjectDir(tempDir.resolve("project").toFile()).build();
+        final Map<String, String> settings = new TreeMap<>();
+        settings.put("mcVersion", "1.7.10");
+        settings.put("mcpMappingVersion", "12");
+        final String digest = PrebuiltWorkspace.computeDigest(settings, project.files(at));
+        assertEquals(digest, PrebuiltWorkspace.computeDigest(settings, project.files(at)));
+        settings.put("mcpMappingVersion", "13");
+        final String otherDigest = PrebuiltWorkspace.computeDigest(settings, project.files(at));
+        assertNotEquals(digest, otherDigest);
+
+        PrebuiltWorkspace.publish(repository, "1.7.10", digest, patchedMcJar, sourcesJar);
+        project.getRepositories().maven(repo -> repo.setUrl(repository));
+
+        final PrebuiltWorkspace workspace = PrebuiltWorkspace
+                .resolve(project.getConfigurations(), project.getDependencies(), "1.7.10", digest);
+        assertNotNull(workspace);
+        assertEquals("classes", FileUtils.readFileToString(workspace.getPatchedMcJar(), StandardCharsets.UTF_8));
+        assertEquals("sources", FileUtils.readFileToString(workspace.getSourcesJar(), StandardCharsets.UTF_8));
+
+        assertNull(
+                PrebuiltWorkspace
+                        .resolve(project.getConfigurations(), project.getDependencies(), "1.7.10", otherDigest));
+    }
+
+    private File writeFile(String name, String contents) throws IOException {
+        final File file = tempDir.resolve(name).toFile();
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        return file;
+    }
+}
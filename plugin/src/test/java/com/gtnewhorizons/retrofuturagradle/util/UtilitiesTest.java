@@ -0,0 +1,84 @@
+package com.gtnewhorizons.retrofuturagradle.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that memory jars are reproducible, so that the tasks consuming them can hit the build cache.
+ */
+class UtilitiesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void saveMemoryJarIsReproducible() throws IOException {
+        final List<String> names = Arrays.asList(
+                "net/minecraft/src/Zeta.java",
+                "assets/minecraft/lang/en_US.lang",
+                "net/",
+                "net/minecraft/src/Alpha.java",
+                "pack.png",
+                "net/minecraft/src/Mid.java");
+
+        final Map<String, byte[]> resourcesA = new LinkedHashMap<>();
+        final Map<String, String> sourcesA = new LinkedHashMap<>();
+        for (String name : names) {
+            addEntry(name, resourcesA, sourcesA);
+        }
+        final Map<String, byte[]> resourcesB = new HashMap<>();
+        final Map<String, String> sourcesB = new ConcurrentHashMap<>();
+        for (int i = names.size() - 1; i >= 0; i--) {
+            addEntry(names.get(i), resourcesB, sourcesB);
+        }
+
+        final File jarA = tempDir.resolve("a.jar").toFile();
+        final File jarB = tempDir.resolve("b.jar").toFile();
+        Utilities.saveMemoryJar(resourcesA, sourcesA, jarA, JarCompression.DEFAULT);
+        Utilities.saveMemoryJar(resourcesB, sourcesB, jarB, JarCompression.DEFAULT);
+
+        assertEquals(
+                DigestUtils.sha256Hex(FileUtils.readFileToByteArray(jarA)),
+                DigestUtils.sha256Hex(FileUtils.readFileToByteArray(jarB)));
+
+        try (final ZipFile zip = new ZipFile(jarA)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                assertEquals(JarWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES, entry.getTime(), entry.getName());
+            }
+        }
+
+        final Map<String, byte[]> loadedResources = new HashMap<>();
+        final Map<String, String> loadedSources = new HashMap<>();
+        Utilities.loadMemoryJar(jarA, loadedResources, loadedSources);
+        assertEquals(sourcesA, loadedSources);
+        assertEquals(resourcesA.keySet(), loadedResources.keySet());
+    }
+
+    private static void addEntry(String name, Map<String, byte[]> resources, Map<String, String> sources) {
+        if (name.endsWith(".java")) {
+            sources.put(name, "// " + name + "\npublic class X {}\n");
+        } else if (name.endsWith("/")) {
+            resources.put(name, new byte[0]);
+        } else {
+            resources.put(name, name.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
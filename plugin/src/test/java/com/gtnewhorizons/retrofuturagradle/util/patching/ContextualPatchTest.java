@@ -0,0 +1,34 @@
+package com.gtnewhorizons.retrofuturagradle.util.patching;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the canonical forms used by compiled patches agree with the line-by-line access canonicalization.
+ */
+class ContextualPatchTest {
+
+    @Test
+    void accessModifiersAreIgnored() {
+        assertSameCanonical("public final int field_1000_a;", "int field_1000_a;");
+        assertSameCanonical("private static void func_1001_a() {", "public static void func_1001_a() {");
+        assertSameCanonical("label123: {", "label456: {");
+        assertNotEquals(
+                ContextualPatch.canonicalizeAccess("int field_1000_a;"),
+                ContextualPatch.canonicalizeAccess("int field_1000_b;"));
+    }
+
+    @Test
+    void trailingAccessModifiersMustPair() {
+        // The target line keeps a trailing modifier the hunk line doesn't have, which doesn't match
+        assertNotEquals(ContextualPatch.canonicalizeAccess("a final"), ContextualPatch.canonicalizeAccess("a"));
+        assertNotEquals(ContextualPatch.canonicalizeAccess("a"), ContextualPatch.canonicalizeAccess("a public"));
+        assertSameCanonical("a final", "a public");
+        assertSameCanonical("final a", "a");
+    }
+
+    private static void assertSameCanonical(String target, String hunk) {
+        assertEquals(ContextualPatch.canonicalizeAccess(target), ContextualPatch.canonicalizeAccess(hunk));
+    }
+}